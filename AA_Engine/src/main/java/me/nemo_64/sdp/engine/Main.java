@@ -6,6 +6,8 @@ import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.engine.game.GameCreator;
+import me.nemo_64.sdp.engine.game.GameGrid;
+import me.nemo_64.sdp.engine.game.GameHost;
 import me.nemo_64.sdp.engine.game.tasks.SaveGameStateTask;
 import me.nemo_64.sdp.engine.token.TokenService;
 import me.nemo_64.sdp.engine.weather.WeatherRequester;
@@ -13,6 +15,7 @@ import me.nemo_64.sdp.utilities.NetworkUtil;
 import me.nemo_64.sdp.utilities.NumberUtil;
 import me.nemo_64.sdp.utilities.configuration.Config;
 import me.nemo_64.sdp.utilities.configuration.ConfigurationBuilder;
+import me.nemo_64.sdp.utilities.map.MapCompression;
 import me.nemo_64.sdp.utilities.player.PlayerManager;
 import me.nemo_64.sdp.utilities.player.PlayerUtil;
 import me.nemo_64.sdp.utilities.secure.SecurityConfigFilters;
@@ -20,9 +23,12 @@ import me.nemo_64.sdp.utilities.secure.SecurityConfigFilters;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
@@ -76,9 +82,28 @@ public class Main {
                 .register(WEATHER_REQUEST_TIMEOUT, Integer.class, false, 2000, NumberUtil::isGraterThanZero)
                 .register(WEATHER_REQUEST_URI, String.class, false, WeatherRequester.DEFAULT_URI)
                 .register(WEATHER_REQUEST_TOKEN, String.class, false, WeatherRequester.DEFAULT_TOKEN)
-                .register(SAVE_MAP_PERIOD, Integer.class, true, 17, NumberUtil::isGraterThanZero)
+                .register(CHECKPOINT_PERIOD, Integer.class, false, 1000, NumberUtil::isGraterThanZero)
+                .register(CHECKPOINT_FORMAT, String.class, false, SaveGameStateTask.JSON_FORMAT,
+                        SaveGameStateTask::isValidFormat)
+                .register(PRETTY_CHECKPOINTS, Boolean.class, false, false)
+                .register(SNAPSHOT_PERIOD, Integer.class, false, 17, NumberUtil::isGraterThanZero)
+                .register(MAP_KEYFRAME_INTERVAL, Integer.class, false, 60, NumberUtil::isGraterThanZero)
+                .register(MAP_MAX_IDLE, Integer.class, false, 1000, NumberUtil::isGraterThanZero)
+                .register(MAP_COMPRESSION, String.class, false, MapCompression.DEFLATE,
+                        MapCompression::isValidAlgorithm)
+                .register(MAP_COMPRESSION_LEVEL, Integer.class, false, 1, MapCompression::isValidLevel)
                 .register(KAFKA_ENCRYPTION_ALGORITHM, String.class, false, "AES",
                         SecurityConfigFilters::isValidCipherAlgorithm)
+                .register(WORLD_WIDTH, Integer.class, false, 20, GameGrid::isValidSize)
+                .register(WORLD_HEIGHT, Integer.class, false, 20, GameGrid::isValidSize)
+                .register(MAP_SEED, Long.class, true)
+                .register(TICK_PERIOD, Integer.class, false, 17, NumberUtil::isGraterThanZero)
+                .register(MAX_GAMES, Integer.class, false, 1, NumberUtil::isGraterThanZero)
+                .register(GAME_WORKERS, Integer.class, false, Runtime.getRuntime().availableProcessors(),
+                        NumberUtil::isGraterThanZero)
+                .register(CONSUMER_THREADS, Integer.class, false, 1, NumberUtil::isGraterThanZero)
+                .register(REGION_WORKERS, Integer.class, false, Runtime.getRuntime().availableProcessors(),
+                        NumberUtil::isGraterThanZero)
                 .withLogger(ENGINE_LOGGER);
         if (args.length == 1) {
             confBuilder.withFile(Path.of(args[0]));
@@ -114,46 +139,94 @@ public class Main {
 
         WeatherRequester weather = WeatherRequester.create();
 
-        Optional<Game> game = recoverGame(Config.getString(BOOTSTRAP_IP));
-        if (game.isPresent()) {
-            System.out.println("Game recovered");
-            System.out.println("Continuing game");
-            game.get().startGame();
-        } else {
+        GameHost host = GameHost.create(Config.getString(BOOTSTRAP_IP), Config.getInt(MAX_GAMES),
+                Config.getInt(GAME_WORKERS), Config.getInt(CONSUMER_THREADS), Config.getInt(REGION_WORKERS));
+
+        for (Game game : recoverGames(host)) {
+            System.out.println("Game " + game.getId() + " recovered");
+            System.out.println("Continuing game " + game.getId());
+            host.start(game);
+        }
+
+        while (true) {
+            try {
+                host.awaitFreeSlot();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
             // NEW MATCH
             System.out.println("Creating new match");
-            game = GameCreator.createGame(Config.getInt(MAX_PLAYERS), tokens, weather, Config.getString(BOOTSTRAP_IP));
+            Optional<Game> game = GameCreator.createGame(Config.getInt(MAX_PLAYERS), tokens, weather, host);
             if (game.isEmpty()) {
                 System.out.println("Could not create game");
-                System.exit(-1);
+                continue;
             }
-            System.out.println("Starting game");
-            game.get().startGame();
+            System.out.println("Starting game " + game.get().getId());
+            host.start(game.get());
         }
     }
 
-    private static Optional<Game> recoverGame(String boostrap) {
-        Path file = SaveGameStateTask.GAME_STATE_FILE;
-        if (!Files.exists(file)) {
-            return Optional.empty();
+    private static List<Game> recoverGames(GameHost host) {
+        List<Game> games = new ArrayList<>();
+        if (Files.isDirectory(SaveGameStateTask.GAMES_FOLDER)) {
+            try (var files = Files.list(SaveGameStateTask.GAMES_FOLDER)) {
+                files.filter((file) -> file.getFileName().toString().endsWith(".json"))
+                        .forEach((file) -> recoverGame(file, host).ifPresent(games::add));
+            } catch (IOException e) {
+                System.out.println("IO exception while listing saved games: " + e.getMessage());
+                ENGINE_LOGGER.warning("IO exception while listing saved games: " + e.getMessage());
+            }
+            try (var files = Files.list(SaveGameStateTask.GAMES_FOLDER)) {
+                files.filter((file) -> file.getFileName().toString().endsWith(SaveGameStateTask.BINARY_EXTENSION))
+                        .forEach((file) -> recoverCheckpoint(file, host).ifPresent(games::add));
+            } catch (IOException e) {
+                System.out.println("IO exception while listing saved games: " + e.getMessage());
+                ENGINE_LOGGER.warning("IO exception while listing saved games: " + e.getMessage());
+            }
+        }
+        // Saves from before games had ids are picked up once and moved to the games folder by the next save
+        Path legacy = SaveGameStateTask.LEGACY_GAME_STATE_FILE;
+        if (Files.exists(legacy)) {
+            recoverGame(legacy, host).ifPresent(games::add);
+            try {
+                Files.delete(legacy);
+            } catch (IOException e) {
+                ENGINE_LOGGER.warning("Could not delete " + legacy + ": " + e.getMessage());
+            }
         }
-        System.out.println("Recovering last game");
+        return games;
+    }
+
+    private static Optional<Game> recoverGame(Path file, GameHost host) {
+        System.out.println("Recovering game from " + file);
         try (Reader reader = Files.newBufferedReader(file)) {
             JsonReader jsonReader = new JsonReader(reader);
             jsonReader.setLenient(false);
             JsonElement element = JsonParser.parseReader(jsonReader);
             if (!element.isJsonObject()) {
                 System.out.println("Invalid JSON file");
-                ENGINE_LOGGER.warning("Invalid JSON file");
+                ENGINE_LOGGER.warning("Invalid JSON file " + file);
                 return Optional.empty();
             }
-            return GameCreator.fromJson(element.getAsJsonObject(), boostrap);
+            return GameCreator.fromJson(element.getAsJsonObject(), host);
         } catch (JsonParseException e) {
             System.out.println("JSON exception while recovering game file: " + e.getMessage());
-            ENGINE_LOGGER.warning("JSON exception while recovering game file: " + e.getMessage());
+            ENGINE_LOGGER.warning("JSON exception while recovering game file " + file + ": " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("IO exception while recovering game file: " + e.getMessage());
+            ENGINE_LOGGER.warning("IO exception while recovering game file " + file + ": " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Game> recoverCheckpoint(Path file, GameHost host) {
+        System.out.println("Recovering game from " + file);
+        try {
+            return GameCreator.fromCheckpoint(ByteBuffer.wrap(Files.readAllBytes(file)), host);
         } catch (IOException e) {
             System.out.println("IO exception while recovering game file: " + e.getMessage());
-            ENGINE_LOGGER.warning("IO exception while recovering game file: " + e.getMessage());
+            ENGINE_LOGGER.warning("IO exception while recovering game file " + file + ": " + e.getMessage());
         }
         return Optional.empty();
     }
@@ -0,0 +1,152 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.token.TokenTable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.IntConsumer;
+
+// Hot fields of the movable elements of a game, kept in parallel arrays indexed by the slot of their token so the
+// scans over every mover walk a few flat arrays. Flags written by different threads live in different arrays, so a
+// write never undoes another. Positions are not copied here, the grid already indexes them. The arrays are split in
+// pages that are only created once a slot of them is attached, and pages are never copied, so a game with a few
+// movers keeps a few small arrays and a write from another thread is never lost to a copy
+public final class EntityStore {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(Page[].class);
+
+    static final int PAGE_BITS = 8;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final class Page {
+
+        private final int[] tokens = new int[PAGE_SIZE];
+        private final int[] levels = new int[PAGE_SIZE];
+        private final long[] lastMovements = new long[PAGE_SIZE];
+        private final byte[] alive = new byte[PAGE_SIZE];
+        private final byte[] disconnected = new byte[PAGE_SIZE];
+        private final long[] departedOn = new long[PAGE_SIZE];
+
+    }
+
+    private final Page[] pages = new Page[TokenTable.CAPACITY >>> PAGE_BITS];
+    private volatile int limit;
+
+    // Only for slots that were attached
+    private Page page(int slot) {
+        return (Page) PAGES.getAcquire(pages, slot >>> PAGE_BITS);
+    }
+
+    // Only called from the thread that ticks the game, once the token owns its slot in the token table
+    public int attach(int token, int level, long lastMovement, boolean isAlive, boolean isDisconnected) {
+        int slot = TokenTable.slotOf(token);
+        Page page = page(slot);
+        if (page == null) {
+            page = new Page();
+            PAGES.setRelease(pages, slot >>> PAGE_BITS, page);
+        }
+        int index = slot & PAGE_MASK;
+        page.tokens[index] = token;
+        page.levels[index] = level;
+        LONGS.setRelease(page.lastMovements, index, lastMovement);
+        BYTES.setRelease(page.disconnected, index, (byte) (isDisconnected ? 1 : 0));
+        BYTES.setRelease(page.alive, index, (byte) (isAlive ? 1 : 0));
+        if (slot >= limit)
+            limit = slot + 1;
+        return slot;
+    }
+
+    // The slot stops being swept until another element is attached to it
+    public void detach(int slot) {
+        BYTES.setRelease(page(slot).alive, slot & PAGE_MASK, (byte) 0);
+    }
+
+    public int level(int slot) {
+        return page(slot).levels[slot & PAGE_MASK];
+    }
+
+    public void setLevel(int slot, int level) {
+        page(slot).levels[slot & PAGE_MASK] = level;
+    }
+
+    public long lastMovement(int slot) {
+        return (long) LONGS.getAcquire(page(slot).lastMovements, slot & PAGE_MASK);
+    }
+
+    public void setLastMovement(int slot, long moment) {
+        LONGS.setRelease(page(slot).lastMovements, slot & PAGE_MASK, moment);
+    }
+
+    // Movement messages arrive by token, which may have left the game since it was looked up
+    public void touch(int token, long moment) {
+        int slot = TokenTable.slotOf(token);
+        Page page = page(slot);
+        if (page != null && page.tokens[slot & PAGE_MASK] == token)
+            LONGS.setRelease(page.lastMovements, slot & PAGE_MASK, moment);
+    }
+
+    public boolean isAlive(int slot) {
+        return (byte) BYTES.getAcquire(page(slot).alive, slot & PAGE_MASK) != 0;
+    }
+
+    public void setAlive(int slot, boolean isAlive) {
+        BYTES.setRelease(page(slot).alive, slot & PAGE_MASK, (byte) (isAlive ? 1 : 0));
+    }
+
+    public boolean isDisconnected(int slot) {
+        return (byte) BYTES.getAcquire(page(slot).disconnected, slot & PAGE_MASK) != 0;
+    }
+
+    public void setDisconnected(int slot, boolean isDisconnected) {
+        BYTES.setRelease(page(slot).disconnected, slot & PAGE_MASK, (byte) (isDisconnected ? 1 : 0));
+    }
+
+    // Marks the tick the element last left its region on. Only used by the region the element stands on while it
+    // runs a phase, and regions wait for each other between phases
+    public long departedOn(int slot) {
+        return page(slot).departedOn[slot & PAGE_MASK];
+    }
+
+    public void setDepartedOn(int slot, long tick) {
+        page(slot).departedOn[slot & PAGE_MASK] = tick;
+    }
+
+    // Number of pages created so far
+    int pageCount() {
+        int count = 0;
+        for (int i = 0; i < pages.length; i++)
+            if (PAGES.getAcquire(pages, i) != null)
+                count++;
+        return count;
+    }
+
+    // Marks the living elements that have not moved since the given moment as disconnected and the rest as
+    // connected, passing the token of every element that changed
+    public void sweepDisconnected(long since, IntConsumer onDisconnect, IntConsumer onReconnect) {
+        int end = limit;
+        for (int first = 0; first < end; first += PAGE_SIZE) {
+            Page page = page(first);
+            if (page == null)
+                continue;
+            int pageEnd = Math.min(PAGE_SIZE, end - first);
+            for (int index = 0; index < pageEnd; index++) {
+                if ((byte) BYTES.getAcquire(page.alive, index) == 0)
+                    continue;
+                boolean wasDisconnected = (byte) BYTES.getAcquire(page.disconnected, index) != 0;
+                if ((long) LONGS.getAcquire(page.lastMovements, index) < since) {
+                    if (!wasDisconnected) {
+                        BYTES.setRelease(page.disconnected, index, (byte) 1);
+                        onDisconnect.accept(page.tokens[index]);
+                    }
+                } else if (wasDisconnected) {
+                    BYTES.setRelease(page.disconnected, index, (byte) 0);
+                    onReconnect.accept(page.tokens[index]);
+                }
+            }
+        }
+    }
+
+}
@@ -1,351 +1,685 @@
 package me.nemo_64.sdp.engine.game;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import me.nemo_64.sdp.engine.Main;
-import me.nemo_64.sdp.engine.game.element.FoodGameElement;
 import me.nemo_64.sdp.engine.game.element.GameElement;
-import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import me.nemo_64.sdp.engine.game.element.InteractionMatrix;
 import me.nemo_64.sdp.engine.game.element.NPCGameElement;
 import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+import me.nemo_64.sdp.engine.game.generator.MapGenerator;
+import me.nemo_64.sdp.engine.game.generator.RandomMapGenerator;
 import me.nemo_64.sdp.engine.game.tasks.CheckDisconnectsTimerTask;
 import me.nemo_64.sdp.engine.game.tasks.NotifyGameStarted;
 import me.nemo_64.sdp.engine.game.tasks.SaveGameStateTask;
 import me.nemo_64.sdp.engine.game.tasks.SendGameMapTask;
 import me.nemo_64.sdp.engine.game.tasks.SendKeepAliveMessage;
+import me.nemo_64.sdp.engine.game.tasks.WriteSnapshotTask;
+import me.nemo_64.sdp.engine.token.TokenTable;
 import me.nemo_64.sdp.engine.util.ConfigurationEntry;
+import me.nemo_64.sdp.utilities.KafkaMessage;
 import me.nemo_64.sdp.utilities.KafkaTopic;
-import me.nemo_64.sdp.utilities.NumberUtil;
 import me.nemo_64.sdp.utilities.configuration.Config;
 import me.nemo_64.sdp.utilities.data.City;
 import me.nemo_64.sdp.utilities.player.LoadedPlayer;
 import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.producer.KafkaProducer;
-import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.serialization.StringDeserializer;
-import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.Duration;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 import java.util.logging.Logger;
 
 public class Game {
 
-    private static final double FOOD_PROBABILITY = 0.2;
-    private static final double MINE_PROBABILITY = 0.15;
     private static final Logger LOGGER = Logger.getLogger(Game.class.getName());
-    private static final Random RANDOM = new Random();
-    private static final ScheduledExecutorService SERVICE = Executors.newScheduledThreadPool(2);
+    private static final Gson GSON = new Gson();
 
     static {
         LOGGER.setParent(Main.ENGINE_LOGGER);
     }
 
-    private static KafkaProducer<String, String> createProducer(String bootstrap) {
-        Properties producerProperties = new Properties();
-        producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
-        producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        return new KafkaProducer<>(producerProperties);
+    public static Optional<Game> create(String id, Collection<GameElement> elements, City[] cities, int width,
+            int height, GameHost host, SymmetricCipher symmetricCipher) {
+        return Optional.of(new Game(id, elements, cities, width, height, host, symmetricCipher));
     }
 
-    private static KafkaConsumer<String, String> createConsumer(String bootstrap) {
-        Properties consumerProperties = new Properties();
-        consumerProperties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
-        consumerProperties.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
-                StringDeserializer.class.getName());
-        consumerProperties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                StringDeserializer.class.getName());
-        consumerProperties.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "AA_Engine");
-        consumerProperties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
-        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProperties);
-        consumer.subscribe(
-                Arrays.asList(KafkaTopic.MOVEMENT, KafkaTopic.MOVABLE_KEEP_ALIVE, KafkaTopic.NPC_JOIN_LEAVE));
-        return consumer;
+    public static Optional<Game> create(String id, Map<String, LoadedPlayer> tokens, City[] cities, int width,
+            int height, GameHost host, SymmetricCipher symmetricCipher) {
+        return create(id, tokens, cities, width, height, host, symmetricCipher, RandomMapGenerator.fromConfig(id));
     }
 
-    public static Optional<Game> create(Collection<GameElement> elements, City[] cities, String bootstrap,
-            SymmetricCipher symmetricCipher) {
-        return Optional
-                .of(new Game(elements, cities, createProducer(bootstrap), createConsumer(bootstrap), symmetricCipher));
-    }
-
-    public static Optional<Game> create(Map<String, LoadedPlayer> tokens, City[] cities, String bootstrap,
-            SymmetricCipher symmetricCipher) {
-        Set<Position> usedPositions = new HashSet<>();
-        List<GameElement> elements = new ArrayList<>();
-        for (int i = 0; i < 20; i++) {
-            for (int j = 0; j < 20; j++) {
-                Position p = new Position(i, j);
-                if (RANDOM.nextDouble() <= FOOD_PROBABILITY) {
-                    elements.add(new FoodGameElement(null, p));
-                    usedPositions.add(p);
-                } else if (RANDOM.nextDouble() <= MINE_PROBABILITY) {
-                    elements.add(new MineGameElement(null, p));
-                    usedPositions.add(p);
-                }
-            }
-        }
-        tokens.forEach((token, player) -> {
-            Position p;
-            do {
-                p = randomPosition();
-            } while (usedPositions.contains(p));
-            usedPositions.add(p);
-            elements.add(new PlayerGameElement(null, p, player, 1, token));
-        });
-        return Optional
-                .of(new Game(elements, cities, createProducer(bootstrap), createConsumer(bootstrap), symmetricCipher));
-    }
-
-    private static Position randomPosition() {
-        return new Position(RANDOM.nextInt(20), RANDOM.nextInt(20));
+    public static Optional<Game> create(String id, Map<String, LoadedPlayer> tokens, City[] cities, int width,
+            int height, GameHost host, SymmetricCipher symmetricCipher, MapGenerator generator) {
+        List<GameElement> elements = generator.generate(width, height, tokens);
+        return Optional.of(new Game(id, elements, cities, width, height, host, symmetricCipher, generator));
     }
 
-    private static Optional<Position> movementFor(String movement) {
-        return Optional.ofNullable(switch (movement) {
-            case "NW" -> new Position(-1, -1);
-            case "N" -> new Position(0, -1);
-            case "NE" -> new Position(1, -1);
-            case "W" -> new Position(-1, 0);
-            case "E" -> new Position(1, 0);
-            case "SW" -> new Position(-1, 1);
-            case "S" -> new Position(0, 1);
-            case "SE" -> new Position(1, 1);
-            default -> null;
-        });
-    }
+    // Offsets indexed by the direction byte of a movement message
+    private static final int[] DIRECTION_X = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int[] DIRECTION_Y = { -1, -1, -1, 0, 0, 1, 1, 1 };
 
+    private ScheduledFuture<?> ticker;
     private ScheduledFuture<?> mapSender;
+    private SendGameMapTask mapTask;
     private ScheduledFuture<?> keepAliveSender;
     private ScheduledFuture<?> disconnectsChecker;
-    private ScheduledFuture<?> gameSaver;
+    private ScheduledFuture<?> snapshotWriter;
+    private WriteSnapshotTask snapshotTask;
     private boolean running = false;
     private final City[] cities;
-    private final Map<String, GameElement.MovableGameElement> movable = new ConcurrentHashMap<>();
+    private final GameClimate climate;
+    private final TokenTable<GameElement.MovableGameElement> movable = new TokenTable<>(
+            GameElement.MovableGameElement::token);
+    private final EntityStore entities = new EntityStore();
     private final AtomicBoolean finished = new AtomicBoolean(false);
-    private final Map<Position, List<GameElement>> elements = new ConcurrentHashMap<>();
-    private final KafkaProducer<String, String> producer;
-    private final KafkaConsumer<String, String> consumer;
+    private final GameGrid grid;
+    private final MapGenerator generator;
+    private final Queue<Runnable> pendingActions = new ConcurrentLinkedQueue<>();
+    // Movements are kept as token and direction. The consumers queue them in the pending buffer, which the tick
+    // swaps with the drained one, so both are reused and queuing a movement does not allocate
+    private final Object movementsLock = new Object();
+    private MoveBuffer pendingMovements = new MoveBuffer(2);
+    private MoveBuffer drainedMovements = new MoveBuffer(2);
+    private final MoveBuffer deferredMovements = new MoveBuffer(2);
+    private final GameRegions regions;
+    // By region, the movements it applies this tick and the ones it leaves for the next
+    private final MoveBuffer[] regionMovements;
+    private final MoveBuffer[] regionDeferred;
+    // Movements that left their region, as their place in the movements of the region they left, token and cell.
+    // Kept by destination and then source region, so every region only writes its own buffers
+    private final MoveBuffer[][] inboxes;
+    private final int[][] arrivalCursors;
+    private final IntConsumer departuresPhase;
+    private final IntConsumer arrivalsPhase;
+    private volatile boolean elementsRemoved = false;
+    private final GameStats stats = new GameStats();
+    private volatile GameFrame frame;
+    // Set by changes outside the grid, like the cities, so the next frame gets a new version
+    private boolean worldChanged = false;
+    private long tick = 0;
+    private volatile long lastTickDuration = 0;
+    private final GameJournal journal;
+    private final AtomicBoolean checkpointing = new AtomicBoolean(false);
+    private long lastCheckpoint;
+    private volatile long checkpointedVersion = -1;
+    private final String id;
+    private final GameHost host;
     private final SymmetricCipher symmetricCipher;
 
-    public Game(Collection<GameElement> elements, City[] cities, KafkaProducer<String, String> producer,
-            KafkaConsumer<String, String> consumer, SymmetricCipher symmetricCipher) {
+    public Game(String id, Collection<GameElement> elements, City[] cities, int width, int height, GameHost host,
+            SymmetricCipher symmetricCipher) {
+        this(id, elements, cities, width, height, host, symmetricCipher, RandomMapGenerator.fromConfig(id));
+    }
+
+    public Game(String id, Collection<GameElement> elements, City[] cities, int width, int height, GameHost host,
+            SymmetricCipher symmetricCipher, MapGenerator generator) {
+        this.id = id;
+        this.generator = generator;
         this.cities = cities;
-        this.producer = producer;
-        this.consumer = consumer;
+        this.grid = new GameGrid(width, height);
+        this.climate = new GameClimate(width, height, cities);
+        this.host = host;
+        this.regions = new GameRegions(grid, host == null ? null : host.getRegionPool(),
+                host == null ? 1 : host.getRegionWorkers());
+        this.regionMovements = newBuffers(regions.count(), 2);
+        this.regionDeferred = newBuffers(regions.count(), 2);
+        this.inboxes = new MoveBuffer[regions.count()][];
+        for (int region = 0; region < regions.count(); region++)
+            inboxes[region] = newBuffers(regions.count(), 3);
+        this.arrivalCursors = new int[regions.count()][regions.count()];
+        this.journal = new GameJournal(SaveGameStateTask.GAMES_FOLDER, id, regions.count(), LOGGER);
+        this.departuresPhase = journal.inRegions(this::departures);
+        this.arrivalsPhase = journal.inRegions(this::arrivals);
         this.symmetricCipher = symmetricCipher;
         elements.forEach(this::addElement);
+        this.frame = GameFrame.capture(tick, grid, null);
+    }
+
+    private static MoveBuffer[] newBuffers(int regions, int fields) {
+        MoveBuffer[] buffers = new MoveBuffer[regions];
+        for (int i = 0; i < regions; i++)
+            buffers[i] = new MoveBuffer(fields);
+        return buffers;
     }
 
     public List<GameElement> getElementsAt(Position position) {
-        return Collections.unmodifiableList(elements.getOrDefault(position, new ArrayList<>()));
+        return grid.elementsAt(position.x(), position.y());
     }
 
     public void addElement(GameElement element) {
+        if (!grid.contains(element.getPosition().x(), element.getPosition().y())) {
+            LOGGER.warning("Tried to add a game element (" + element + ") outside of the map");
+            return;
+        }
         element.assignGame(this);
         if (element instanceof GameElement.MovableGameElement movableGameElement) {
-            if (movableGameElement.token() == null) {
-                LOGGER.warning("Tried to add a movable game element (" + element + ") but its token is null");
+            if (!movable.put(movableGameElement)) {
+                LOGGER.warning("Tried to add a movable game element (" + element + ") but its token slot is in use");
                 return;
             }
-            movable.put(movableGameElement.token(), movableGameElement);
+            if (element instanceof GameElement.AbstractMovableGameElement stored)
+                stored.attach(entities);
         }
-        elements.computeIfAbsent(element.getPosition(), pos -> new ArrayList<>()).add(element);
+        grid.add(grid.index(element.getPosition().x(), element.getPosition().y()), element);
+        stats.added(element);
     }
 
     public void removeElement(GameElement element) {
         if (element.getGame() != this)
             return;
-        elements.computeIfPresent(element.getPosition(), (key, elements) -> {
-            elements.remove(element);
-            if (element.isStillAlive())
-                element.die();
-            element.notifyRemoved();
-            return elements.isEmpty() ? null : elements;
-        });
-        if (element instanceof GameElement.MovableGameElement movableGameElement) {
-            movable.remove(movableGameElement.token());
-        }
+        if (grid.remove(grid.index(element.getPosition().x(), element.getPosition().y()), element))
+            discard(element);
+        else if (element instanceof GameElement.MovableGameElement movableGameElement)
+            untrack(movableGameElement);
     }
 
-    private void gameLoop() {
-        while (!finished.get()) {
-            for (var record : consumer.poll(Duration.ofMillis(10))) {
-                if (record.topic().equals(KafkaTopic.NPC_JOIN_LEAVE)) {
-                    if (!record.value().startsWith("join:"))
-                        continue;
-                    System.out.println("An NPC requested joining");
-                    SERVICE.schedule(() -> acceptNPC(record.value()), 500, TimeUnit.MILLISECONDS);
-                    continue;
-                }
-                String[] message = record.value().split(":");
-                if (message.length != 2) {
-                    LOGGER.warning("Invalid message on the topic %s: %s. Ignoring record".formatted(record.topic(),
-                            record.value()));
-                    continue;
-                }
-                String token = message[0];
-                GameElement.MovableGameElement element = movable.get(token);
+    // Also used for movers that are between regions and so are on no cell of the grid
+    private void discard(GameElement element) {
+        if (element.isStillAlive())
+            element.die();
+        element.notifyRemoved();
+        if (element instanceof GameElement.MovableGameElement movableGameElement)
+            untrack(movableGameElement);
+        stats.removed(element);
+        journal.removed(element);
+        elementsRemoved = true;
+    }
+
+    private void untrack(GameElement.MovableGameElement element) {
+        if (!movable.remove(element))
+            return;
+        if (element instanceof GameElement.AbstractMovableGameElement stored)
+            stored.detach();
+    }
+
+    public void handleRecord(ConsumerRecord<String, byte[]> record) {
+        if (finished.get())
+            return;
+        byte[] message = record.value();
+        byte type = KafkaMessage.type(message);
+        switch (type) {
+            case KafkaMessage.NPC_JOIN -> {
+                int level = KafkaMessage.joinLevel(message);
+                UUID npc = KafkaMessage.joinNpc(message);
+                System.out.println("An NPC requested joining " + id);
+                host.getScheduler().schedule(() -> pendingActions.add(() -> acceptNPC(level, npc)), 500,
+                        TimeUnit.MILLISECONDS);
+            }
+            case KafkaMessage.MOVEMENT, KafkaMessage.KEEP_ALIVE -> {
+                GameElement.MovableGameElement element = movable.get(KafkaMessage.token(message));
                 if (element == null) {
                     LOGGER.warning("Unknown token received on " + record.topic() + ". Ignoring record");
-                    continue;
+                    return;
                 }
-                switch (record.topic()) {
-                    case KafkaTopic.MOVEMENT:
-                        move(element, message[1]);
-                    case KafkaTopic.MOVABLE_KEEP_ALIVE:
-                        element.setLastMovementTimeStamp(System.currentTimeMillis());
-                        break;
+                if (type == KafkaMessage.MOVEMENT) {
+                    byte direction = KafkaMessage.direction(message);
+                    if (direction < 0 || direction >= KafkaMessage.DIRECTION_COUNT) {
+                        LOGGER.info(element.token() + " sent and invalid movement code: " + direction);
+                        return;
+                    }
+                    queueMovement(element.token(), direction);
                 }
+                entities.touch(element.token(), System.currentTimeMillis());
+            }
+            case KafkaMessage.NPC_ACCEPT, KafkaMessage.NPC_DIE, KafkaMessage.GAME_ENDED -> {
+            } // Sent by the engine itself
+            default -> LOGGER.warning("Invalid message on the topic " + record.topic() + ". Ignoring record");
+        }
+    }
+
+    // Queued actions run on the worker the game is pinned to. Movements are then split by the region the mover
+    // stands on: every region applies its own movements in arrival order and hands the ones crossing a border to
+    // the inbox of the destination region, which applies them afterwards in the same order
+    private void tick(long tickPeriod, long checkpointPeriod) {
+        long start = System.nanoTime();
+        step();
+        frame = GameFrame.capture(++tick, grid, frame, worldChanged);
+        worldChanged = false;
+        if (!finished.get() && start - lastCheckpoint >= checkpointPeriod
+                && journal.getVersion() != checkpointedVersion)
+            checkpoint();
+        lastTickDuration = System.nanoTime() - start;
+        if (TimeUnit.NANOSECONDS.toMillis(lastTickDuration) > tickPeriod)
+            LOGGER.warning("Tick %d took %dms, longer than the %dms tick period".formatted(tick,
+                    TimeUnit.NANOSECONDS.toMillis(lastTickDuration), tickPeriod));
+    }
+
+    // Everything a tick does but taking its frame
+    void step() {
+        journal.enter();
+        try {
+            Runnable action;
+            while (!finished.get() && (action = pendingActions.poll()) != null)
+                action.run();
+            moveElements();
+            if (elementsRemoved) {
+                elementsRemoved = false;
+                checkWinner();
             }
+        } finally {
+            journal.leave();
+        }
+        if (!finished.get())
+            journal.endTick(tick + 1);
+    }
+
+    // Called by the consumers, the movement is applied on the next tick
+    void queueMovement(int token, int direction) {
+        synchronized (movementsLock) {
+            pendingMovements.add(token, direction);
         }
     }
 
-    private void acceptNPC(String str) {
-        if (!str.startsWith("join:")) {
-            LOGGER.info("Invalid message on " + KafkaTopic.NPC_JOIN_LEAVE + ": " + str);
+    private void moveElements() {
+        distribute(deferredMovements);
+        deferredMovements.clear();
+        MoveBuffer received;
+        synchronized (movementsLock) {
+            received = pendingMovements;
+            pendingMovements = drainedMovements;
+            drainedMovements = received;
+        }
+        distribute(received);
+        received.clear();
+        regions.run(departuresPhase);
+        journal.collect();
+        regions.run(arrivalsPhase);
+        journal.collect();
+        for (int region = 0; region < regionMovements.length; region++) {
+            regionMovements[region].clear();
+            deferredMovements.addAll(regionDeferred[region]);
+            regionDeferred[region].clear();
+        }
+    }
+
+    // Movers are looked up by token, so the movements of the ones that left the game since are dropped
+    private void distribute(MoveBuffer movements) {
+        for (int i = 0; i < movements.size(); i++) {
+            int token = movements.get(i, 0);
+            GameElement.MovableGameElement element = movable.get(token);
+            if (element != null)
+                regionMovements[regions.regionOf(element.getPosition().y())].add(token, movements.get(i, 1));
+        }
+    }
+
+    // Ticks after the frame go to a new journal segment, so the old ones can be deleted once the frame is saved.
+    // If the previous checkpoint is still being written this one is tried again next tick. A game that did not
+    // change since its last checkpoint is not saved again
+    private void checkpoint() {
+        if (!checkpointing.compareAndSet(false, true))
+            return;
+        lastCheckpoint = System.nanoTime();
+        checkpointedVersion = journal.getVersion();
+        GameFrame checkpoint = frame;
+        journal.startSegment(checkpoint.tick() + 1);
+        host.getScheduler().execute(new SaveGameStateTask(this, checkpoint));
+    }
+
+    public void checkpointSaved(GameFrame checkpoint, boolean saved) {
+        if (saved)
+            journal.deleteSegmentsBefore(checkpoint.tick() + 1);
+        else
+            checkpointedVersion = -1; // Tried again next period even if nothing changes
+        checkpointing.set(false);
+    }
+
+    private void acceptNPC(int level, UUID npcId) {
+        if (level <= 0) {
+            LOGGER.info("Invalid level on " + KafkaTopic.NPC_JOIN_LEAVE + ": " + level);
             return;
         }
-        String[] args = str.split(":");
-        if (args.length != 3)
+        OptionalInt freeToken = movable.freeToken();
+        if (freeToken.isEmpty()) {
+            LOGGER.warning("An NPC tried to join but there are no tokens left");
             return;
-        Optional<Integer> level = NumberUtil.tryParseInt(args[1]);
-        if (level.isEmpty() || level.get() <= 0) {
-            LOGGER.info("Invalid level on " + KafkaTopic.NPC_JOIN_LEAVE + ": " + str);
+        }
+        Optional<Position> position = generator.spawnPosition(frame, getWidth(), getHeight());
+        if (position.isEmpty()) {
+            LOGGER.warning("An NPC tried to join but there are no free cells left");
             return;
         }
-        String id = args[2];
-        String token = "npc-" + new Random().nextInt();
-        NPCGameElement npc = new NPCGameElement(this, randomPosition(), level.get(), token);
+        int token = freeToken.getAsInt();
+        NPCGameElement npc = new NPCGameElement(this, position.get(), level, token);
         LOGGER.info("NPC joined: " + npc);
         System.out.println("NPC joined: " + npc);
         addElement(npc);
+        journal.spawnNpc(token, level, npc.getPosition().x(), npc.getPosition().y());
         npc.setLastMovementTimeStamp(System.currentTimeMillis());
-        producer.send(new ProducerRecord<>(KafkaTopic.NPC_JOIN_LEAVE, "accept:" + id + ":" + token));
+        send(KafkaTopic.NPC_JOIN_LEAVE, KafkaMessage.npcAccept(npcId, token));
     }
 
-    private void move(GameElement.MovableGameElement element, String movementCode) {
-        if (!element.isStillAlive())
-            return;
-        var oMovement = movementFor(movementCode);
-        if (oMovement.isEmpty()) {
-            LOGGER.info(element.token() + " sent and invalid movement code: " + movementCode);
-            return;
+    // Brings a game loaded from a checkpoint up to date with the ticks its journal holds after it
+    void recover(long checkpointTick) {
+        tick = journal.replay(checkpointTick, new JournalReplayer());
+        frame = GameFrame.capture(tick, grid, null);
+        if (tick > checkpointTick)
+            LOGGER.info("Replayed " + (tick - checkpointTick) + " ticks from the journal of " + id);
+    }
+
+    // Replayed changes were already announced when they happened, so nothing is sent while applying them
+    private final class JournalReplayer implements GameJournal.Replayer {
+
+        @Override
+        public void move(int token, int x, int y) {
+            GameElement.MovableGameElement element = movable.get(token);
+            if (element == null || !grid.contains(x, y))
+                return;
+            grid.remove(grid.index(element.getPosition().x(), element.getPosition().y()), element);
+            grid.add(grid.index(x, y), element);
+            element.setPosition(grid.positionAt(grid.index(x, y)));
         }
-        Position oldPosition = element.getPosition();
-        Position newPos = oldPosition.plus(oMovement.get().x(), oMovement.get().y()).normalized();
-        if (elements.containsKey(newPos)) {
-            List<GameElement> elementsInNewPos = new ArrayList<>(elements.get(newPos));
-            elementsLoop: for (GameElement other : elementsInNewPos) {
-                switch (element.interactWith(other)) {
-                    case NOTHING -> {
-                    }
-                    case REMOVE_BOTH -> {
-                        removeElement(element);
-                        removeElement(other);
-                        break elementsLoop;
-                    }
-                    case REMOVE_OTHER -> removeElement(other);
-                    case REMOVE_SELF -> {
-                        removeElement(element);
-                        break elementsLoop;
-                    }
-                }
-                if (!element.isStillAlive()) {
-                    checkWinner();
+
+        @Override
+        public void level(int token, int level) {
+            if (movable.get(token) instanceof PlayerGameElement player)
+                player.setLevel(level);
+        }
+
+        @Override
+        public void removeMovable(int token) {
+            GameElement.MovableGameElement element = movable.get(token);
+            if (element != null)
+                forget(element);
+        }
+
+        @Override
+        public void removeStatic(byte kind, int x, int y) {
+            if (!grid.contains(x, y))
+                return;
+            int index = grid.index(x, y);
+            for (int i = 0; i < grid.sizeAt(index); i++) {
+                GameElement element = grid.get(index, i);
+                if (element.kind() == kind) {
+                    forget(element);
                     return;
                 }
             }
         }
-        elements.computeIfPresent(oldPosition, (key, elements) -> {
-            elements.remove(element);
-            return elements.isEmpty() ? null : elements;
-        });
-        if (element.isStillAlive()) {
-            elements.computeIfAbsent(newPos, (p) -> new ArrayList<>()).add(element);
-            element.setPosition(newPos);
+
+        @Override
+        public void spawnNpc(int token, int level, int x, int y) {
+            if (grid.contains(x, y))
+                addElement(new NPCGameElement(Game.this, grid.positionAt(grid.index(x, y)), level, token));
+        }
+
+        private void forget(GameElement element) {
+            grid.remove(grid.index(element.getPosition().x(), element.getPosition().y()), element);
+            if (element instanceof GameElement.MovableGameElement movableGameElement)
+                untrack(movableGameElement);
+            element.notifyRemoved();
+            stats.removed(element);
+        }
+    }
+
+    private void departures(int source) {
+        MoveBuffer movements = regionMovements[source];
+        MoveBuffer deferred = regionDeferred[source];
+        // Plus one, so slots that never departed do not match on the first tick
+        long departedStamp = tick + 1;
+        for (int order = 0; order < movements.size() && !finished.get(); order++) {
+            int token = movements.get(order, 0);
+            int direction = movements.get(order, 1);
+            GameElement.MovableGameElement element = movable.get(token);
+            if (element == null)
+                continue;
+            int slot = TokenTable.slotOf(token);
+            // A mover waiting in another inbox continues with its remaining movements next tick
+            if (entities.departedOn(slot) == departedStamp) {
+                deferred.add(token, direction);
+                continue;
+            }
+            if (!element.isStillAlive())
+                continue;
+            // Same wrapping as Position.normalized without going through intermediate positions
+            Position oldPosition = element.getPosition();
+            int x = oldPosition.x() + DIRECTION_X[direction];
+            int y = oldPosition.y() + DIRECTION_Y[direction];
+            if (x < 0)
+                x = getWidth() - 1;
+            else if (x >= getWidth())
+                x = 0;
+            if (y < 0)
+                y = getHeight() - 1;
+            else if (y >= getHeight())
+                y = 0;
+            int newIndex = grid.index(x, y);
+            int region = regions.regionOf(y);
+            if (region == source) {
+                move(element, newIndex);
+                continue;
+            }
+            grid.remove(grid.index(oldPosition.x(), oldPosition.y()), element);
+            entities.setDepartedOn(slot, departedStamp);
+            inboxes[region][source].add(order, token, newIndex);
+        }
+    }
+
+    // Every source leaves its arrivals sorted by order, so the inboxes are merged by order and then by source
+    private void arrivals(int region) {
+        MoveBuffer[] sources = inboxes[region];
+        int[] cursors = arrivalCursors[region];
+        Arrays.fill(cursors, 0);
+        while (true) {
+            int next = -1;
+            for (int source = 0; source < sources.length; source++) {
+                if (cursors[source] < sources[source].size() && (next < 0
+                        || sources[source].get(cursors[source], 0) < sources[next].get(cursors[next], 0)))
+                    next = source;
+            }
+            if (next < 0)
+                break;
+            int arrival = cursors[next]++;
+            GameElement.MovableGameElement element = movable.get(sources[next].get(arrival, 1));
+            int index = sources[next].get(arrival, 2);
+            if (element != null && interact(element, index, false)) {
+                grid.add(index, element);
+                element.setPosition(grid.positionAt(index));
+                journal.move(element.token(), element.getPosition().x(), element.getPosition().y());
+            }
+        }
+        for (MoveBuffer inbox : sources)
+            inbox.clear();
+    }
+
+    private void move(GameElement.MovableGameElement element, int newIndex) {
+        int oldIndex = grid.index(element.getPosition().x(), element.getPosition().y());
+        if (interact(element, newIndex, true)) {
+            grid.remove(oldIndex, element);
+            grid.add(newIndex, element);
+            element.setPosition(grid.positionAt(newIndex));
+            journal.move(element.token(), element.getPosition().x(), element.getPosition().y());
         } else {
-            checkWinner();
+            grid.remove(oldIndex, element);
         }
     }
 
+    // Resolves the mover against everything on the target cell and tells if it survived. onGrid is false for
+    // movers coming from another region, which are not on their old cell anymore
+    private boolean interact(GameElement.MovableGameElement element, int newIndex, boolean onGrid) {
+        int level = element.getRawLevel();
+        // Removed elements shift the cell down, so the index only advances past survivors
+        for (int i = 0; i < grid.sizeAt(newIndex);) {
+            GameElement other = grid.get(newIndex, i);
+            switch (InteractionMatrix.resolve(element, other)) {
+                case NOTHING -> i++;
+                case REMOVE_BOTH -> {
+                    remove(element, onGrid);
+                    removeElement(other);
+                    return false;
+                }
+                case REMOVE_OTHER -> {
+                    removeElement(other);
+                    if (i < grid.sizeAt(newIndex) && grid.get(newIndex, i) == other)
+                        i++;
+                }
+                case REMOVE_SELF -> {
+                    remove(element, onGrid);
+                    return false;
+                }
+            }
+            if (!element.isStillAlive()) {
+                remove(element, onGrid);
+                return false;
+            }
+        }
+        if (element.getRawLevel() != level)
+            journal.level(element.token(), element.getRawLevel());
+        return element.isStillAlive();
+    }
+
+    private void remove(GameElement.MovableGameElement element, boolean onGrid) {
+        if (onGrid)
+            removeElement(element);
+        else
+            discard(element);
+    }
+
+    // Only looks for the winner once the counters say the match is over
     private void checkWinner() {
-        var remainingPlayers = getMovableElements().stream()
-                .filter(PlayerGameElement.class::isInstance)
-                .map(PlayerGameElement.class::cast)
-                .map(PlayerGameElement::getPlayer).toList();
-        long playerCount = remainingPlayers.size();
-        if (playerCount == 0) {
-            finishGame(null);
-        } else if (playerCount == 1) {
-            finishGame(remainingPlayers.get(0));
+        int players = stats.getPlayers();
+        if (players > 1)
+            return;
+        LoadedPlayer winner = null;
+        if (players == 1) {
+            winner = getMovableElements().stream()
+                    .filter(PlayerGameElement.class::isInstance)
+                    .map(PlayerGameElement.class::cast)
+                    .map(PlayerGameElement::getPlayer)
+                    .findFirst().orElse(null);
         }
+        finishGame(winner);
     }
 
     public void finishGame(LoadedPlayer winner) {
-        System.out.println("Finishing game");
+        System.out.println("Finishing game " + id);
         finished.set(true);
         running = false;
+        // The game usually finishes from its own tick, so the worker thread must not be interrupted
+        ticker.cancel(false);
         mapSender.cancel(true);
+        mapTask.close();
         keepAliveSender.cancel(true);
-        gameSaver.cancel(true);
         disconnectsChecker.cancel(true);
-        try {
-            Files.deleteIfExists(SaveGameStateTask.GAME_STATE_FILE);
-        } catch (IOException e) {
-            LOGGER.warning("Could not delete game save file: " + e.getMessage());
+        snapshotWriter.cancel(false);
+        snapshotTask.close();
+        // Synchronized with the checkpoint writer so a checkpoint being saved does not bring the file back
+        synchronized (this) {
+            journal.close();
+            journal.deleteAll();
+            try {
+                Files.deleteIfExists(SaveGameStateTask.stateFileOf(id));
+                Files.deleteIfExists(SaveGameStateTask.binaryStateFileOf(id));
+            } catch (IOException e) {
+                LOGGER.warning("Could not delete game save file: " + e.getMessage());
+            }
         }
         String winnerName = winner == null ? "NO WINNER" : winner.getAlias();
-        producer.send(new ProducerRecord<>(KafkaTopic.NPC_JOIN_LEAVE, "game_ended"));
-        producer.send(new ProducerRecord<>(KafkaTopic.PLAYER_GAME_UPDATES, "winner:" + winnerName));
-        producer.flush();
-        System.out.println("Game finished");
-        SERVICE.schedule(() -> System.exit(0), 5, TimeUnit.SECONDS);
+        send(KafkaTopic.NPC_JOIN_LEAVE, KafkaMessage.gameEnded());
+        send(KafkaTopic.PLAYER_GAME_UPDATES, "winner:" + winnerName);
+        host.getProducer().flush();
+        System.out.println("Game " + id + " finished");
+        host.finished(this);
     }
 
-    public void startGame() {
+    void startGame(ScheduledExecutorService worker) {
         if (isRunning())
             return;
-        LOGGER.info("Starting game in 3 seconds");
-        System.out.println("Starting game in 3 seconds");
+        LOGGER.info("Starting game " + id + " in 3 seconds");
+        System.out.println("Starting game " + id + " in 3 seconds");
         running = true;
-        mapSender = SERVICE.scheduleAtFixedRate(new SendGameMapTask(this), 0, 17, TimeUnit.MILLISECONDS);
-        keepAliveSender = SERVICE.scheduleAtFixedRate(new SendKeepAliveMessage(this), 0, 1000, TimeUnit.MILLISECONDS);
-        gameSaver = SERVICE.scheduleAtFixedRate(new SaveGameStateTask(this), 250,
-                Config.getOptionalInt(ConfigurationEntry.SAVE_MAP_PERIOD).orElse(17), TimeUnit.MILLISECONDS);
-        disconnectsChecker = SERVICE.scheduleAtFixedRate(new CheckDisconnectsTimerTask(this), 3750, 1000,
+        long tickPeriod = Config.getOptionalInt(ConfigurationEntry.TICK_PERIOD).orElse(17);
+        long checkpointPeriod = TimeUnit.MILLISECONDS.toNanos(
+                Config.getOptionalInt(ConfigurationEntry.CHECKPOINT_PERIOD).orElse(1000));
+        ScheduledExecutorService scheduler = host.getScheduler();
+        // The first checkpoint is taken before any tick so the journal always has a frame to start from
+        worker.execute(this::checkpoint);
+        ticker = worker.scheduleAtFixedRate(() -> {
+            try {
+                tick(tickPeriod, checkpointPeriod);
+            } catch (RuntimeException e) {
+                LOGGER.severe("Exception on tick " + tick + " of " + id + ": " + e.getMessage());
+            }
+        }, tickPeriod, tickPeriod, TimeUnit.MILLISECONDS);
+        mapTask = new SendGameMapTask(this);
+        mapSender = scheduler.scheduleAtFixedRate(mapTask, 0, 17, TimeUnit.MILLISECONDS);
+        keepAliveSender = scheduler.scheduleAtFixedRate(new SendKeepAliveMessage(this), 0, 1000,
                 TimeUnit.MILLISECONDS);
-        SERVICE.schedule(new NotifyGameStarted(this), 3, TimeUnit.SECONDS);
-        gameLoop();
+        snapshotTask = new WriteSnapshotTask(this);
+        snapshotWriter = scheduler.scheduleAtFixedRate(snapshotTask, 0,
+                Config.getOptionalInt(ConfigurationEntry.SNAPSHOT_PERIOD).orElse(17), TimeUnit.MILLISECONDS);
+        disconnectsChecker = scheduler.scheduleAtFixedRate(new CheckDisconnectsTimerTask(this), 3750, 1000,
+                TimeUnit.MILLISECONDS);
+        scheduler.schedule(new NotifyGameStarted(this), 3, TimeUnit.SECONDS);
+    }
+
+    // Text messages go out as their UTF-8 bytes, which is what the readers' string deserializers expect
+    public Future<RecordMetadata> send(String topic, String message) {
+        return send(topic, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Future<RecordMetadata> send(String topic, String message, Callback callback) {
+        return host.getProducer().send(new ProducerRecord<>(topic, id, message.getBytes(StandardCharsets.UTF_8)),
+                callback);
+    }
+
+    public Future<RecordMetadata> send(String topic, byte[] message) {
+        return host.getProducer().send(new ProducerRecord<>(topic, id, message));
+    }
+
+    // Written straight to the writer, so saving a big map does not allocate an object per element. The small parts
+    // are still built, as they are the same size on every game
+    public void writeJson(JsonWriter out, GameFrame frame) throws IOException {
+        out.beginObject();
+        out.name("id").value(id);
+        out.name("tick").value(frame.tick());
+        out.name("width").value(getWidth());
+        out.name("height").value(getHeight());
+        out.name("cities");
+        GSON.toJson(citiesAsJson(), out);
+        out.name("map");
+        writeMapJson(out, frame);
+        out.name("password");
+        GSON.toJson(symmetricCipher.serialize(), out);
+        out.name("stats");
+        GSON.toJson(statsAsJson(), out);
+        out.endObject();
     }
 
-    public JsonObject asJson() {
-        JsonObject json = new JsonObject();
-        json.add("cities", citiesAsJson());
-        json.add("map", mapAsJson());
-        json.add("password", symmetricCipher.serialize());
+    public void writeMapJson(JsonWriter out, GameFrame frame) throws IOException {
+        out.beginArray();
+        for (GameElement element : frame.elements()) {
+            if (element.shouldBeSaved())
+                element.writeJson(out);
+        }
+        out.endArray();
+    }
+
+    public JsonObject statsAsJson() {
+        JsonObject json = stats.asJson();
+        json.addProperty("tick", getFrame().tick());
+        json.addProperty("last-tick-duration", getLastTickDuration());
         return json;
     }
 
@@ -358,43 +692,73 @@ public class Game {
         return array;
     }
 
-    public JsonArray mapAsJson() {
-        return getElements()
-                .values()
-                .stream()
-                .flatMap(List::stream)
-                .filter(GameElement::shouldBeSaved)
-                .reduce(new JsonArray(), (array, element) -> {
-                    array.add(element.asJson());
-                    return array;
-                }, (array1, array2) -> {
-                    JsonArray array = new JsonArray(array1.size() + array2.size());
-                    array.addAll(array1);
-                    array.addAll(array2);
-                    return array;
-                });
-    }
-
     public Collection<GameElement.MovableGameElement> getMovableElements() {
-        return Collections.unmodifiableCollection(movable.values());
+        return Collections.unmodifiableList(movable.values());
     }
 
     public boolean isRunning() {
         return running;
     }
 
-    public KafkaProducer<String, String> getProducer() {
-        return producer;
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    public String getId() {
+        return id;
     }
 
     public City getCity(int x, int y) {
-        int column = x / 10;
-        int row = y / 10;
+        int column = x * 2 / getWidth();
+        int row = y * 2 / getHeight();
         return cities[column + row * 2];
     }
 
-    public Map<Position, List<GameElement>> getElements() {
-        return elements;
+    public byte getClimateZone(int x, int y) {
+        return climate.zoneAt(x, y);
+    }
+
+    // Applied between ticks, as the level of the players depends on the climate of their cell
+    public void updateCity(int quadrant, City city) {
+        pendingActions.add(() -> {
+            cities[quadrant] = city;
+            climate.update(cities);
+            for (GameElement.MovableGameElement element : movable.values()) {
+                if (element instanceof PlayerGameElement player) {
+                    player.invalidateLevel();
+                    grid.touch(grid.index(player.getPosition().x(), player.getPosition().y()));
+                }
+            }
+            worldChanged = true;
+        });
+    }
+
+    public int getWidth() {
+        return grid.getWidth();
+    }
+
+    public int getHeight() {
+        return grid.getHeight();
+    }
+
+    public EntityStore getEntities() {
+        return entities;
+    }
+
+    public GameGrid getGrid() {
+        return grid;
+    }
+
+    public GameStats getStats() {
+        return stats;
+    }
+
+    public GameFrame getFrame() {
+        return frame;
+    }
+
+    public long getLastTickDuration() {
+        return lastTickDuration;
     }
 
     public City[] getCities() {
@@ -0,0 +1,166 @@
+package me.nemo_64.sdp.engine.game;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import me.nemo_64.sdp.engine.Main;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.GameElementType;
+import me.nemo_64.sdp.engine.game.element.GameElementTypes;
+import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+import me.nemo_64.sdp.utilities.data.City;
+import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+// Binary checkpoint of a game. The header holds the game data and is followed by one fixed size record per element,
+// which starts with the kind its type was registered with and is decoded by the decoder of that type. As records
+// have the same size they are decoded in parallel
+public final class GameCheckpoint {
+
+    private static final Logger LOGGER = Logger.getLogger(GameCheckpoint.class.getName());
+
+    static {
+        LOGGER.setParent(Main.ENGINE_LOGGER);
+    }
+
+    private GameCheckpoint() {
+    }
+
+    private static final int MAGIC = 0x53444743;
+    private static final int VERSION = 1;
+
+    // tag, x, y, level, token, player
+    private static final int RECORD_SIZE = 1 + 4 + 4 + 4 + 4 + 16;
+    // Smaller games decode faster on a single thread
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    public static byte[] encode(Game game, GameFrame frame) {
+        byte[] id = game.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] password = game.getSymmetricCipher().serialize().toString().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> cityNames = new ArrayList<>();
+        for (City city : game.getCities())
+            cityNames.add(city.name().getBytes(StandardCharsets.UTF_8));
+        List<GameElement> elements = new ArrayList<>(frame.elements().size());
+        for (GameElement element : frame.elements()) {
+            if (!element.shouldBeSaved())
+                continue;
+            if (GameElementTypes.typeOf(element).map((type) -> type.decoder() == null).orElse(true)) {
+                LOGGER.warning("Can not save " + element + " in a checkpoint, its type has no decoder");
+                continue;
+            }
+            elements.add(element);
+        }
+        int size = 4 + 4 + 8 + 4 + 4 + 4 + id.length + 4 + password.length + 4 + 4;
+        for (byte[] name : cityNames)
+            size += 4 + name.length + 8;
+        ByteBuffer bytes = ByteBuffer.allocate(size + elements.size() * RECORD_SIZE);
+        bytes.putInt(MAGIC).putInt(VERSION).putLong(frame.tick());
+        bytes.putInt(game.getWidth()).putInt(game.getHeight());
+        bytes.putInt(id.length).put(id);
+        bytes.putInt(password.length).put(password);
+        bytes.putInt(cityNames.size());
+        for (int i = 0; i < cityNames.size(); i++)
+            bytes.putInt(cityNames.get(i).length).put(cityNames.get(i)).putDouble(game.getCities()[i].temperature());
+        bytes.putInt(elements.size());
+        for (GameElement element : elements) {
+            bytes.put(element.kind()).putInt(element.getPosition().x()).putInt(element.getPosition().y());
+            if (element instanceof GameElement.MovableGameElement movable)
+                bytes.putInt(movable.getRawLevel()).putInt(movable.token());
+            else
+                bytes.putInt(0).putInt(0);
+            UUID player = element instanceof PlayerGameElement playerElement
+                    ? playerElement.getPlayer().getId()
+                    : null;
+            bytes.putLong(player == null ? 0 : player.getMostSignificantBits())
+                    .putLong(player == null ? 0 : player.getLeastSignificantBits());
+        }
+        return bytes.array();
+    }
+
+    // The game is brought up to date with its journal before being returned
+    public static Optional<Game> decode(ByteBuffer bytes, GameHost host) {
+        try {
+            if (bytes.getInt() != MAGIC) {
+                LOGGER.warning("Checkpoint does not start with the checkpoint magic number");
+                return Optional.empty();
+            }
+            int version = bytes.getInt();
+            if (version != VERSION) {
+                LOGGER.warning("Unknown checkpoint version " + version);
+                return Optional.empty();
+            }
+            long tick = bytes.getLong();
+            int width = bytes.getInt();
+            int height = bytes.getInt();
+            if (!GameGrid.isValidSize(width) || !GameGrid.isValidSize(height)) {
+                LOGGER.warning("Checkpoint has invalid world size " + width + "x" + height);
+                return Optional.empty();
+            }
+            String id = getString(bytes);
+            Optional<SymmetricCipher> secret = SymmetricCipher.deserialize(
+                    JsonParser.parseString(getString(bytes)).getAsJsonObject());
+            if (secret.isEmpty()) {
+                LOGGER.warning("Checkpoint has an invalid password");
+                return Optional.empty();
+            }
+            City[] cities = new City[bytes.getInt()];
+            for (int i = 0; i < cities.length; i++)
+                cities[i] = new City(getString(bytes), bytes.getDouble());
+            int count = bytes.getInt();
+            if (count < 0 || (long) count * RECORD_SIZE > bytes.remaining()) {
+                LOGGER.warning("Checkpoint is shorter than its " + count + " elements");
+                return Optional.empty();
+            }
+            GameElement[] elements = new GameElement[count];
+            int first = bytes.position();
+            IntStream indexes = IntStream.range(0, count);
+            if (count >= PARALLEL_THRESHOLD)
+                indexes = indexes.parallel();
+            indexes.forEach((i) -> elements[i] = decodeRecord(bytes, first + i * RECORD_SIZE));
+            for (int i = 0; i < count; i++) {
+                if (elements[i] == null) {
+                    LOGGER.warning("Checkpoint has an invalid element at " + i);
+                    return Optional.empty();
+                }
+            }
+            Optional<Game> game = Game.create(id, Arrays.asList(elements), cities, width, height, host,
+                    secret.get());
+            game.ifPresent((recovered) -> recovered.recover(tick));
+            return game;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                | JsonParseException | IllegalStateException e) {
+            LOGGER.warning("Invalid checkpoint: " + e);
+            return Optional.empty();
+        }
+    }
+
+    private static GameElement decodeRecord(ByteBuffer bytes, int record) {
+        Optional<GameElementType> type = GameElementTypes.typeOf(bytes.get(record));
+        if (type.isEmpty() || type.get().decoder() == null)
+            return null;
+        Position position = new Position(bytes.getInt(record + 1), bytes.getInt(record + 5));
+        long most = bytes.getLong(record + 17);
+        long least = bytes.getLong(record + 25);
+        UUID player = most == 0 && least == 0 ? null : new UUID(most, least);
+        return type.get().decoder().decode(position, bytes.getInt(record + 9), bytes.getInt(record + 13), player);
+    }
+
+    private static String getString(ByteBuffer bytes) {
+        int length = bytes.getInt();
+        if (length < 0 || length > bytes.remaining())
+            throw new BufferUnderflowException();
+        byte[] string = new byte[length];
+        bytes.get(string);
+        return new String(string, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,49 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.utilities.data.City;
+
+// Climate zone of every quadrant of the map, computed again only when the temperature of a city changes so finding
+// the zone of a cell is a single array read
+public final class GameClimate {
+
+    public static final byte MILD = 0;
+    public static final byte COLD = 1;
+    public static final byte HOT = 2;
+
+    public static byte zoneOf(double temperature) {
+        if (temperature <= 10)
+            return COLD;
+        if (temperature >= 25)
+            return HOT;
+        return MILD;
+    }
+
+    private final int width;
+    private final int height;
+    // First column and row of the right and bottom quadrants, the same split Game.getCity uses
+    private final int splitX;
+    private final int splitY;
+    private final byte[] zones = new byte[4];
+
+    GameClimate(int width, int height, City[] cities) {
+        this.width = width;
+        this.height = height;
+        this.splitX = (width + 1) / 2;
+        this.splitY = (height + 1) / 2;
+        update(cities);
+    }
+
+    // Cities are ordered by quadrant, left to right and top to bottom
+    void update(City[] cities) {
+        for (int quadrant = 0; quadrant < zones.length; quadrant++)
+            zones[quadrant] = zoneOf(cities[quadrant].temperature());
+    }
+
+    // Cells outside the map are mild
+    public byte zoneAt(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            return MILD;
+        return zones[(x >= splitX ? 1 : 0) + (y >= splitY ? 2 : 0)];
+    }
+
+}
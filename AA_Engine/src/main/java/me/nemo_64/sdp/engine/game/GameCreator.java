@@ -7,6 +7,7 @@ import me.nemo_64.sdp.engine.Main;
 import me.nemo_64.sdp.engine.util.ConfigurationEntry;
 import me.nemo_64.sdp.engine.weather.WeatherRequester;
 import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.GameElementTypes;
 import me.nemo_64.sdp.engine.token.GameTokenCreationRequester;
 import me.nemo_64.sdp.engine.token.TokenService;
 import me.nemo_64.sdp.utilities.JsonUtil;
@@ -17,8 +18,7 @@ import me.nemo_64.sdp.utilities.player.LoadedPlayer;
 import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
 
 import javax.crypto.NoSuchPaddingException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -41,11 +41,12 @@ public class GameCreator {
     }
 
     public static Optional<Game> createGame(int maxPlayers, TokenService tokenService, WeatherRequester requester,
-            String bootstrap) {
+            GameHost host) {
+        String id = host.newGameId();
         String password = askForPassword();
         GamePassword requestPassword = new GamePassword(password);
         City[] cities = askForCities(requester);
-        var players = waitForPlayers(maxPlayers, tokenService, requestPassword);
+        var players = waitForPlayers(maxPlayers, tokenService, requestPassword, id);
         if (players.isEmpty())
             return Optional.empty();
         System.out.println("Waiting for " + maxPlayers + " to join. Press <Enter> to start the match early");
@@ -60,7 +61,8 @@ public class GameCreator {
         try {
             var tokens = players.get().getFuture().get();
             t.interrupt();
-            return Game.create(tokens, cities, bootstrap,
+            return Game.create(id, tokens, cities, Config.getInt(ConfigurationEntry.WORLD_WIDTH),
+                    Config.getInt(ConfigurationEntry.WORLD_HEIGHT), host,
                     requestPassword.toCipher(Config.getString(ConfigurationEntry.KAFKA_ENCRYPTION_ALGORITHM)));
         } catch (InterruptedException e) {
             LOGGER.warning("Interrupted while waiting for players");
@@ -86,9 +88,9 @@ public class GameCreator {
     }
 
     private static Optional<TokenService.GameTokenCreationRequest> waitForPlayers(int maxPlayers,
-            TokenService tokenService, GameTokenCreationRequester.Password password) {
+            TokenService tokenService, GameTokenCreationRequester.Password password, String gameId) {
         Optional<TokenService.GameTokenCreationRequest> request = tokenService.requestTokensCreation(maxPlayers,
-                new Requester(password));
+                new Requester(password, gameId));
         if (request.isEmpty()) {
             LOGGER.warning("Could not wait for players, the token service is running another request");
             return Optional.empty();
@@ -135,7 +137,7 @@ public class GameCreator {
         return cities;
     }
 
-    public static Optional<Game> fromJson(JsonObject json, String bootstrap) {
+    public static Optional<Game> fromJson(JsonObject json, GameHost host) {
         if (!json.has("cities") || !json.get("cities").isJsonArray()) {
             LOGGER.warning("JSON has invalid cities entry");
             return Optional.empty();
@@ -144,6 +146,13 @@ public class GameCreator {
             LOGGER.warning("JSON has invalid map entry");
             return Optional.empty();
         }
+        // Saves made before the world size was configurable are always 20x20
+        int width = JsonUtil.getNumber(json, "width").map(Number::intValue).orElse(20);
+        int height = JsonUtil.getNumber(json, "height").map(Number::intValue).orElse(20);
+        if (!GameGrid.isValidSize(width) || !GameGrid.isValidSize(height)) {
+            LOGGER.warning("JSON has invalid world size " + width + "x" + height);
+            return Optional.empty();
+        }
         Optional<City[]> cities = cities(json.get("cities").getAsJsonArray());
         if (cities.isEmpty())
             return Optional.empty();
@@ -153,7 +162,16 @@ public class GameCreator {
         var secret = SymmetricCipher.deserialize(json.getAsJsonObject("password"));
         if (secret.isEmpty())
             return Optional.empty();
-        return Game.create(elements.get(), cities.get(), bootstrap, secret.get());
+        String id = JsonUtil.getString(json, "id").orElseGet(host::newGameId);
+        // Saves made before the journal have no tick and no journal to replay
+        long tick = JsonUtil.getNumber(json, "tick").map(Number::longValue).orElse(0L);
+        Optional<Game> game = Game.create(id, elements.get(), cities.get(), width, height, host, secret.get());
+        game.ifPresent((recovered) -> recovered.recover(tick));
+        return game;
+    }
+
+    public static Optional<Game> fromCheckpoint(ByteBuffer checkpoint, GameHost host) {
+        return GameCheckpoint.decode(checkpoint, host);
     }
 
     private static Optional<Collection<GameElement>> elements(JsonArray array) {
@@ -178,32 +196,15 @@ public class GameCreator {
     }
 
     private static Optional<GameElement> loadElement(String type, JsonObject data) {
-        try {
-            Class<?> clazz = Class.forName(type);
-            Method parser = clazz.getDeclaredMethod("parse", JsonObject.class);
-            Object value = parser.invoke(null, data);
-            if (value == null) {
-                LOGGER.warning("parse method of " + type + " returned null for " + data);
-                return Optional.empty();
-            }
-            if (!(value instanceof GameElement element)) {
-                LOGGER.warning("parse method of " + type + " does not return a game element");
-                return Optional.empty();
-            }
-            return Optional.of(element);
-        } catch (ClassNotFoundException e) {
-            LOGGER.warning("Unknown game element type: " + type);
-            return Optional.empty();
-        } catch (NoSuchMethodException e) {
-            LOGGER.warning(type + " does not have a parse method");
-            return Optional.empty();
-        } catch (InvocationTargetException e) {
-            LOGGER.warning("parse method of " + type + " does not follow the declaration");
-            return Optional.empty();
-        } catch (IllegalAccessException e) {
-            LOGGER.warning("Can not access parse method of " + type);
+        var parser = GameElementTypes.parserOf(type);
+        if (parser.isEmpty()) {
+            LOGGER.warning("Unknown game element type or type without a static parse method: " + type);
             return Optional.empty();
         }
+        GameElement element = parser.get().apply(data);
+        if (element == null)
+            LOGGER.warning("Parser of " + type + " returned null for " + data);
+        return Optional.ofNullable(element);
     }
 
     private static Optional<City[]> cities(JsonArray array) {
@@ -230,9 +231,11 @@ public class GameCreator {
     private static final class Requester implements GameTokenCreationRequester {
 
         private final Password password;
+        private final String gameId;
 
-        private Requester(Password password) {
+        private Requester(Password password, String gameId) {
             this.password = password;
+            this.gameId = gameId;
         }
 
         @Override
@@ -250,6 +253,11 @@ public class GameCreator {
         public Password password() {
             return password;
         }
+
+        @Override
+        public String gameId() {
+            return gameId;
+        }
     }
 
 }
@@ -0,0 +1,149 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable view of the game at the end of a tick. Chunks nothing was added to or removed from during the tick are
+// shared with the previous frame, so capturing only copies what changed. The lists are built the first time a
+// reader asks for them, on the reader's thread
+public final class GameFrame {
+
+    // Snapshots of the elements of a chunk row by row and the index where each row starts
+    private record ChunkFrame(GameElement[] elements, int[] rowStarts) {
+    }
+
+    static GameFrame capture(long tick, GameGrid grid, GameFrame previous) {
+        return capture(tick, grid, previous, false);
+    }
+
+    // The version moves when a chunk changed or the game says something outside the grid changed
+    static GameFrame capture(long tick, GameGrid grid, GameFrame previous, boolean worldChanged) {
+        ChunkFrame[] chunks = new ChunkFrame[grid.getChunkCount()];
+        int size = 0;
+        boolean anyChanged = worldChanged;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            boolean changed = grid.clearDirty(chunk);
+            anyChanged |= changed;
+            if (previous != null && !changed) {
+                chunks[chunk] = previous.chunks[chunk];
+            } else {
+                int[] rowStarts = new int[grid.getChunkSize() + 1];
+                GameElement[] elements = grid.chunkElements(chunk, rowStarts);
+                if (elements != null) {
+                    for (int i = 0; i < elements.length; i++)
+                        elements[i] = elements[i].snapshot();
+                    chunks[chunk] = new ChunkFrame(elements, rowStarts);
+                }
+            }
+            if (chunks[chunk] != null)
+                size += chunks[chunk].elements().length;
+        }
+        long version = previous == null ? 0 : previous.version + (anyChanged ? 1 : 0);
+        return new GameFrame(tick, version, chunks, size, grid.getChunksWide(), grid.getChunkSize(),
+                grid.getHeight());
+    }
+
+    private final long tick;
+    private final long version;
+    private final ChunkFrame[] chunks;
+    private final int size;
+    private final int chunksWide;
+    private final int chunkSize;
+    private final int height;
+    private volatile List<GameElement> elements;
+    private volatile List<GameElement.MovableGameElement> movables;
+
+    private GameFrame(long tick, long version, ChunkFrame[] chunks, int size, int chunksWide, int chunkSize,
+            int height) {
+        this.tick = tick;
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+        this.chunksWide = chunksWide;
+        this.chunkSize = chunkSize;
+        this.height = height;
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    // Only moves when the world changed, frames of quiet ticks keep the version of the frame before them
+    public long version() {
+        return version;
+    }
+
+    public int chunkCount() {
+        return chunks.length;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public int chunkX(int chunk) {
+        return chunk % chunksWide * chunkSize;
+    }
+
+    public int chunkY(int chunk) {
+        return chunk / chunksWide * chunkSize;
+    }
+
+    public int chunkOf(int x, int y) {
+        return y / chunkSize * chunksWide + x / chunkSize;
+    }
+
+    // True when both frames share the snapshot of the chunk, so nothing was added to or removed from it in between
+    public boolean sameChunk(int chunk, GameFrame other) {
+        return chunks[chunk] == other.chunks[chunk];
+    }
+
+    public int chunkElementCount(int chunk) {
+        ChunkFrame frame = chunks[chunk];
+        return frame == null ? 0 : frame.elements().length;
+    }
+
+    // Sorted by row and column, keeping the order of each cell
+    public GameElement chunkElement(int chunk, int index) {
+        return chunks[chunk].elements()[index];
+    }
+
+    // Sorted by row and column, keeping the order of each cell
+    public List<GameElement> elements() {
+        List<GameElement> elements = this.elements;
+        if (elements == null) {
+            List<GameElement> rows = new ArrayList<>(size);
+            for (int y = 0; y < height; y++) {
+                int row = y % chunkSize;
+                int firstChunk = y / chunkSize * chunksWide;
+                for (int chunk = firstChunk; chunk < firstChunk + chunksWide; chunk++) {
+                    ChunkFrame frame = chunks[chunk];
+                    if (frame == null)
+                        continue;
+                    for (int i = frame.rowStarts()[row]; i < frame.rowStarts()[row + 1]; i++)
+                        rows.add(frame.elements()[i]);
+                }
+            }
+            elements = Collections.unmodifiableList(rows);
+            this.elements = elements;
+        }
+        return elements;
+    }
+
+    public List<GameElement.MovableGameElement> movables() {
+        List<GameElement.MovableGameElement> movables = this.movables;
+        if (movables == null) {
+            List<GameElement.MovableGameElement> found = new ArrayList<>();
+            for (GameElement element : elements())
+                if (element instanceof GameElement.MovableGameElement movable)
+                    found.add(movable);
+            movables = Collections.unmodifiableList(found);
+            this.movables = movables;
+        }
+        return movables;
+    }
+
+}
@@ -0,0 +1,302 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class GameGrid {
+
+    public static final int MAX_SIZE = 1 << 15;
+
+    private static final int INLINE_SLOTS = 2;
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_CELL_BITS = CHUNK_BITS * 2;
+    private static final int CHUNK_CELLS = 1 << CHUNK_CELL_BITS;
+    private static final int MAX_INTERNED_CELLS = 1 << 22;
+
+    public static boolean isValidSize(int size) {
+        return size > 0 && size <= MAX_SIZE;
+    }
+
+    private final int width;
+    private final int height;
+    private final int chunksWide;
+    private final Chunk[] chunks;
+    // The last chunk emptied on every row of chunks, reused by the next chunk of the row that gets an element so
+    // movers going back and forth over a chunk border don't allocate a chunk every time. A row of chunks is only
+    // changed by the region it belongs to
+    private final Chunk[] spares;
+    private final boolean[] dirty;
+    private final Position[][] positions;
+
+    public GameGrid(int width, int height) {
+        if (!isValidSize(width) || !isValidSize(height))
+            throw new IllegalArgumentException("Invalid grid size " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.chunksWide = (width + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new Chunk[chunksWide * ((height + CHUNK_MASK) >> CHUNK_BITS)];
+        this.spares = new Chunk[chunks.length / chunksWide];
+        this.dirty = new boolean[chunks.length];
+        Arrays.fill(dirty, true);
+        // Interned positions cost a reference and a record per visited cell, which only huge maps can't afford
+        this.positions = (long) width * height <= MAX_INTERNED_CELLS ? new Position[chunks.length][] : null;
+    }
+
+    // Cells are numbered chunk by chunk so the chunk and the cell inside it are plain bit fields
+    public int index(int x, int y) {
+        int chunk = (y >> CHUNK_BITS) * chunksWide + (x >> CHUNK_BITS);
+        return (chunk << CHUNK_CELL_BITS) | ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+    }
+
+    public int xOf(int index) {
+        return ((index >>> CHUNK_CELL_BITS) % chunksWide << CHUNK_BITS) | (index & CHUNK_MASK);
+    }
+
+    public int yOf(int index) {
+        return ((index >>> CHUNK_CELL_BITS) / chunksWide << CHUNK_BITS) | ((index >> CHUNK_BITS) & CHUNK_MASK);
+    }
+
+    // The same Position instance is returned for a cell every time, created the first time the cell is asked for
+    public Position positionAt(int index) {
+        if (positions == null)
+            return new Position(xOf(index), yOf(index));
+        int chunkIndex = index >>> CHUNK_CELL_BITS;
+        Position[] chunk = positions[chunkIndex];
+        if (chunk == null) {
+            chunk = new Position[CHUNK_CELLS];
+            positions[chunkIndex] = chunk;
+        }
+        int cell = index & (CHUNK_CELLS - 1);
+        Position position = chunk[cell];
+        if (position == null) {
+            position = new Position(xOf(index), yOf(index));
+            chunk[cell] = position;
+        }
+        return position;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int sizeAt(int index) {
+        Chunk chunk = chunks[index >>> CHUNK_CELL_BITS];
+        return chunk == null ? 0 : chunk.counts[index & (CHUNK_CELLS - 1)];
+    }
+
+    public GameElement first(int index) {
+        Chunk chunk = chunks[index >>> CHUNK_CELL_BITS];
+        return chunk == null ? null : chunk.slots[(index & (CHUNK_CELLS - 1)) * INLINE_SLOTS];
+    }
+
+    public GameElement get(int index, int i) {
+        return chunks[index >>> CHUNK_CELL_BITS].get(index & (CHUNK_CELLS - 1), i);
+    }
+
+    public void add(int index, GameElement element) {
+        int chunkIndex = index >>> CHUNK_CELL_BITS;
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            int row = chunkIndex / chunksWide;
+            chunk = spares[row];
+            if (chunk == null)
+                chunk = new Chunk();
+            else
+                spares[row] = null;
+            chunks[chunkIndex] = chunk;
+        }
+        chunk.add(index & (CHUNK_CELLS - 1), element);
+        dirty[chunkIndex] = true;
+    }
+
+    public boolean remove(int index, GameElement element) {
+        int chunkIndex = index >>> CHUNK_CELL_BITS;
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null || !chunk.remove(index & (CHUNK_CELLS - 1), element))
+            return false;
+        dirty[chunkIndex] = true;
+        if (chunk.elements == 0) {
+            chunks[chunkIndex] = null;
+            spares[chunkIndex / chunksWide] = chunk;
+        }
+        return true;
+    }
+
+    public List<GameElement> elementsAt(int x, int y) {
+        if (!contains(x, y))
+            return List.of();
+        int index = index(x, y);
+        if (sizeAt(index) == 0)
+            return List.of();
+        return new CellView(index);
+    }
+
+    // Visits the elements row by row, keeping the order of each cell
+    public void forEach(Consumer<GameElement> consumer) {
+        for (int y = 0; y < height; y++) {
+            int chunkRow = (y >> CHUNK_BITS) * chunksWide;
+            int cellRow = (y & CHUNK_MASK) << CHUNK_BITS;
+            for (int chunkColumn = 0; chunkColumn < chunksWide; chunkColumn++) {
+                Chunk chunk = chunks[chunkRow + chunkColumn];
+                if (chunk == null)
+                    continue;
+                int columns = Math.min(CHUNK_SIZE, width - (chunkColumn << CHUNK_BITS));
+                for (int x = 0; x < columns; x++) {
+                    int cell = cellRow | x;
+                    int count = chunk.counts[cell];
+                    for (int i = 0; i < count; i++)
+                        consumer.accept(chunk.get(cell, i));
+                }
+            }
+        }
+    }
+
+    // For elements that changed in place, so the next frame takes a new snapshot of their chunk
+    public void touch(int index) {
+        dirty[index >>> CHUNK_CELL_BITS] = true;
+    }
+
+    // Tells if an element was added to or removed from the chunk since the last time it was asked
+    boolean clearDirty(int chunkIndex) {
+        boolean changed = dirty[chunkIndex];
+        dirty[chunkIndex] = false;
+        return changed;
+    }
+
+    // Elements of a chunk row by row, keeping the order of each cell, or null if it is empty. The start of every
+    // row is written to rowStarts, followed by the amount of elements
+    GameElement[] chunkElements(int chunkIndex, int[] rowStarts) {
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null)
+            return null;
+        GameElement[] elements = new GameElement[chunk.elements];
+        int next = 0;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            rowStarts[row] = next;
+            for (int cell = row << CHUNK_BITS; cell < (row + 1) << CHUNK_BITS; cell++) {
+                int count = chunk.counts[cell];
+                for (int i = 0; i < count; i++)
+                    elements[next++] = chunk.get(cell, i);
+            }
+        }
+        rowStarts[CHUNK_SIZE] = next;
+        return elements;
+    }
+
+    int getChunkSize() {
+        return CHUNK_SIZE;
+    }
+
+    int getChunkCount() {
+        return chunks.length;
+    }
+
+    int getChunksWide() {
+        return chunksWide;
+    }
+
+    public int chunkRowOf(int y) {
+        return y >> CHUNK_BITS;
+    }
+
+    public int getChunkRows() {
+        return chunks.length / chunksWide;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private static final class Chunk {
+
+        private final int[] counts = new int[CHUNK_CELLS];
+        private final GameElement[] slots = new GameElement[CHUNK_CELLS * INLINE_SLOTS];
+        private Map<Integer, List<GameElement>> overflow;
+        private int elements;
+
+        private GameElement get(int cell, int i) {
+            if (i < INLINE_SLOTS)
+                return slots[cell * INLINE_SLOTS + i];
+            return overflow.get(cell).get(i - INLINE_SLOTS);
+        }
+
+        private void add(int cell, GameElement element) {
+            int count = counts[cell];
+            if (count < INLINE_SLOTS) {
+                slots[cell * INLINE_SLOTS + count] = element;
+            } else {
+                if (overflow == null)
+                    overflow = new HashMap<>();
+                overflow.computeIfAbsent(cell, (i) -> new ArrayList<>(2)).add(element);
+            }
+            counts[cell] = count + 1;
+            elements++;
+        }
+
+        private boolean remove(int cell, GameElement element) {
+            int count = counts[cell];
+            for (int i = 0; i < count; i++) {
+                if (get(cell, i) != element)
+                    continue;
+                // Shift the following elements down so the cell keeps its insertion order
+                for (int j = i; j < count - 1; j++)
+                    set(cell, j, get(cell, j + 1));
+                set(cell, count - 1, null);
+                counts[cell] = count - 1;
+                elements--;
+                return true;
+            }
+            return false;
+        }
+
+        private void set(int cell, int i, GameElement element) {
+            if (i < INLINE_SLOTS) {
+                slots[cell * INLINE_SLOTS + i] = element;
+                return;
+            }
+            List<GameElement> extra = overflow.get(cell);
+            if (element == null) {
+                extra.remove(i - INLINE_SLOTS);
+                if (extra.isEmpty())
+                    overflow.remove(cell);
+            } else {
+                extra.set(i - INLINE_SLOTS, element);
+            }
+        }
+    }
+
+    private final class CellView extends AbstractList<GameElement> {
+
+        private final int index;
+
+        private CellView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public GameElement get(int i) {
+            if (i < 0 || i >= size())
+                throw new IndexOutOfBoundsException(i);
+            return GameGrid.this.get(index, i);
+        }
+
+        @Override
+        public int size() {
+            return sizeAt(index);
+        }
+    }
+
+}
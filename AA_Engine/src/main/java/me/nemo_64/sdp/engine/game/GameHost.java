@@ -0,0 +1,169 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.Main;
+import me.nemo_64.sdp.utilities.KafkaMessage;
+import me.nemo_64.sdp.utilities.KafkaTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class GameHost {
+
+    private static final Logger LOGGER = Logger.getLogger(GameHost.class.getName());
+    private static final Random RANDOM = new Random();
+
+    static {
+        LOGGER.setParent(Main.ENGINE_LOGGER);
+    }
+
+    private static KafkaProducer<String, byte[]> createProducer(String bootstrap) {
+        Properties producerProperties = new Properties();
+        producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return new KafkaProducer<>(producerProperties);
+    }
+
+    private static KafkaConsumer<String, byte[]> createConsumer(String bootstrap) {
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        consumerProperties.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
+                StringDeserializer.class.getName());
+        consumerProperties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
+                ByteArrayDeserializer.class.getName());
+        consumerProperties.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "AA_Engine");
+        consumerProperties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(consumerProperties);
+        consumer.subscribe(
+                Arrays.asList(KafkaTopic.MOVEMENT, KafkaTopic.MOVABLE_KEEP_ALIVE, KafkaTopic.NPC_JOIN_LEAVE));
+        return consumer;
+    }
+
+    public static GameHost create(String bootstrap, int maxGames, int workers, int consumers, int regionWorkers) {
+        ScheduledExecutorService[] workerThreads = new ScheduledExecutorService[workers];
+        for (int i = 0; i < workers; i++)
+            workerThreads[i] = Executors.newSingleThreadScheduledExecutor();
+        GameHost host = new GameHost(createProducer(bootstrap), Executors.newScheduledThreadPool(workers),
+                workerThreads, maxGames, Executors.newFixedThreadPool(regionWorkers), regionWorkers);
+        for (int i = 0; i < consumers; i++) {
+            KafkaConsumer<String, byte[]> consumer = createConsumer(bootstrap);
+            Thread thread = new Thread(() -> host.consume(consumer), "AA_Engine-consumer-" + i);
+            thread.start();
+        }
+        return host;
+    }
+
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final KafkaProducer<String, byte[]> producer;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledExecutorService[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final int maxGames;
+    private final ExecutorService regionPool;
+    private final int regionWorkers;
+
+    public GameHost(KafkaProducer<String, byte[]> producer, ScheduledExecutorService scheduler,
+            ScheduledExecutorService[] workers, int maxGames, ExecutorService regionPool, int regionWorkers) {
+        this.producer = producer;
+        this.scheduler = scheduler;
+        this.workers = workers;
+        this.maxGames = maxGames;
+        this.regionPool = regionPool;
+        this.regionWorkers = regionWorkers;
+    }
+
+    private void consume(KafkaConsumer<String, byte[]> consumer) {
+        while (true) {
+            for (var record : consumer.poll(Duration.ofMillis(100))) {
+                Optional<Game> game = gameFor(record);
+                if (game.isEmpty()) {
+                    LOGGER.fine("No game for the record on " + record.topic() + " with key " + record.key());
+                    continue;
+                }
+                game.get().handleRecord(record);
+            }
+        }
+    }
+
+    private Optional<Game> gameFor(ConsumerRecord<String, byte[]> record) {
+        if (record.key() != null)
+            return Optional.ofNullable(games.get(record.key()));
+        // NPCs that do not ask for a specific game join any running one
+        if (KafkaMessage.type(record.value()) == KafkaMessage.NPC_JOIN)
+            return games.values().stream().filter(Game::isRunning).findFirst();
+        return Optional.empty();
+    }
+
+    public void start(Game game) {
+        if (games.putIfAbsent(game.getId(), game) != null) {
+            LOGGER.warning("Tried to start the game " + game.getId() + " but a game with that id is already hosted");
+            return;
+        }
+        ScheduledExecutorService worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+        LOGGER.info("Hosting game " + game.getId() + ". " + games.size() + " games are being hosted");
+        game.startGame(worker);
+    }
+
+    void finished(Game game) {
+        synchronized (this) {
+            games.remove(game.getId(), game);
+            notifyAll();
+        }
+        LOGGER.info("Game " + game.getId() + " finished. " + games.size() + " games are being hosted");
+    }
+
+    public synchronized void awaitFreeSlot() throws InterruptedException {
+        while (games.size() >= maxGames)
+            wait();
+    }
+
+    public String newGameId() {
+        String id;
+        do {
+            id = "%08x".formatted(RANDOM.nextInt());
+        } while (games.containsKey(id));
+        return id;
+    }
+
+    public Collection<Game> getGames() {
+        return Collections.unmodifiableCollection(games.values());
+    }
+
+    public KafkaProducer<String, byte[]> getProducer() {
+        return producer;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public ExecutorService getRegionPool() {
+        return regionPool;
+    }
+
+    public int getRegionWorkers() {
+        return regionWorkers;
+    }
+
+}
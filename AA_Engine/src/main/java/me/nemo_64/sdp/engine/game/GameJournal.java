@@ -0,0 +1,315 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Append-only log of the changes a game applies on every tick. Records are an int length followed by the type and
+// its fields. The changes of a tick are followed by a tick record, so a tick is only replayed if it was fully
+// written. The log is split in segments named after the first tick they hold, and a segment is deleted once a
+// checkpoint covers all of its ticks
+public class GameJournal {
+
+    static final byte MOVE = 1; // token, x, y
+    static final byte LEVEL = 2; // token, level
+    static final byte REMOVE_MOVABLE = 3; // token
+    static final byte REMOVE_STATIC = 4; // kind, x, y
+    static final byte SPAWN_NPC = 5; // token, level, x, y
+    static final byte TICK = 6; // tick
+
+    private static final String EXTENSION = ".journal";
+
+    interface Replayer {
+
+        void move(int token, int x, int y);
+
+        void level(int token, int level);
+
+        void removeMovable(int token);
+
+        void removeStatic(byte kind, int x, int y);
+
+        void spawnNpc(int token, int level, int x, int y);
+
+    }
+
+    private final Path folder;
+    private final String gameId;
+    private final Logger logger;
+    private final Buffer tickBuffer = new Buffer();
+    private final Buffer[] regionBuffers;
+    private final ThreadLocal<Buffer> current = new ThreadLocal<>();
+    private FileChannel segment;
+    private long version = 0;
+
+    GameJournal(Path folder, String gameId, int regions, Logger logger) {
+        this.folder = folder;
+        this.gameId = gameId;
+        this.logger = logger;
+        this.regionBuffers = new Buffer[regions];
+        for (int i = 0; i < regions; i++)
+            regionBuffers[i] = new Buffer();
+    }
+
+    // Records are only kept while the thread that makes them is running a tick
+    void enter() {
+        current.set(tickBuffer);
+    }
+
+    // The entry of the thread is kept, so entering again every tick does not allocate a new one
+    void leave() {
+        current.set(null);
+    }
+
+    // Every region writes to its own buffer while running the phase, as regions run at the same time
+    IntConsumer inRegions(IntConsumer phase) {
+        return (region) -> {
+            Buffer previous = current.get();
+            current.set(regionBuffers[region]);
+            try {
+                phase.accept(region);
+            } finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    // Appends what the regions wrote during a phase, in region order
+    void collect() {
+        for (Buffer buffer : regionBuffers) {
+            tickBuffer.append(buffer);
+            buffer.size = 0;
+        }
+    }
+
+    void move(int token, int x, int y) {
+        Buffer buffer = current.get();
+        if (buffer == null)
+            return;
+        buffer.header(13, MOVE).putInt(token).putInt(x).putInt(y);
+    }
+
+    void level(int token, int level) {
+        Buffer buffer = current.get();
+        if (buffer == null)
+            return;
+        buffer.header(9, LEVEL).putInt(token).putInt(level);
+    }
+
+    void removed(GameElement element) {
+        Buffer buffer = current.get();
+        if (buffer == null)
+            return;
+        if (element instanceof GameElement.MovableGameElement movable) {
+            buffer.header(5, REMOVE_MOVABLE).putInt(movable.token());
+            return;
+        }
+        // Elements that never move are found by their cell and the kind of their type when replaying
+        byte kind = element.kind();
+        if (kind != 0)
+            buffer.header(10, REMOVE_STATIC).putByte(kind).putInt(element.getPosition().x())
+                    .putInt(element.getPosition().y());
+    }
+
+    void spawnNpc(int token, int level, int x, int y) {
+        Buffer buffer = current.get();
+        if (buffer == null)
+            return;
+        buffer.header(17, SPAWN_NPC).putInt(token).putInt(level).putInt(x).putInt(y);
+    }
+
+    // Closes the tick and writes everything it changed with a single write. Ticks that changed nothing are not
+    // written at all, so a quiet game does not touch the disk
+    void endTick(long tick) {
+        if (tickBuffer.size == 0)
+            return;
+        version++;
+        if (segment == null) {
+            tickBuffer.size = 0;
+            return;
+        }
+        tickBuffer.header(9, TICK).putLong(tick);
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(tickBuffer.bytes, 0, tickBuffer.size);
+            while (bytes.hasRemaining())
+                segment.write(bytes);
+        } catch (IOException e) {
+            logger.warning("Could not write tick " + tick + " to the journal of " + gameId + ": " + e.getMessage());
+        }
+        tickBuffer.size = 0;
+    }
+
+    // Number of ticks that changed the game so far
+    long getVersion() {
+        return version;
+    }
+
+    void startSegment(long firstTick) {
+        close();
+        try {
+            Files.createDirectories(folder);
+            segment = FileChannel.open(folder.resolve(gameId + "." + firstTick + EXTENSION),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            logger.warning("Could not open a journal segment for " + gameId + ": " + e.getMessage());
+        }
+    }
+
+    void close() {
+        if (segment == null)
+            return;
+        try {
+            segment.close();
+        } catch (IOException e) {
+            logger.warning("Could not close the journal of " + gameId + ": " + e.getMessage());
+        }
+        segment = null;
+    }
+
+    // Deletes the segments that only hold ticks before the given one
+    void deleteSegmentsBefore(long tick) {
+        for (Path file : segments()) {
+            Optional<Long> firstTick = firstTickOf(file);
+            if (firstTick.isEmpty() || firstTick.get() >= tick)
+                continue;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warning("Could not delete the journal segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void deleteAll() {
+        deleteSegmentsBefore(Long.MAX_VALUE);
+    }
+
+    // Replays every complete tick after the given one and returns the last replayed tick
+    long replay(long afterTick, Replayer replayer) {
+        long lastTick = afterTick;
+        for (Path file : segments()) {
+            ByteBuffer bytes;
+            try {
+                bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+            } catch (IOException e) {
+                logger.warning("Could not read the journal segment " + file + ": " + e.getMessage());
+                continue;
+            }
+            int tickStart = 0;
+            while (bytes.remaining() >= 4) {
+                int length = bytes.getInt();
+                if (length <= 0 || bytes.remaining() < length)
+                    break; // A tick that was being written when the engine stopped
+                int start = bytes.position();
+                if (bytes.get() == TICK) {
+                    long tick = bytes.getLong();
+                    if (tick > lastTick) {
+                        apply(bytes.duplicate().position(tickStart).limit(start - 4), replayer);
+                        lastTick = tick;
+                    }
+                    tickStart = start + length;
+                }
+                bytes.position(start + length);
+            }
+        }
+        return lastTick;
+    }
+
+    private static void apply(ByteBuffer bytes, Replayer replayer) {
+        while (bytes.hasRemaining()) {
+            int length = bytes.getInt();
+            int start = bytes.position();
+            switch (bytes.get()) {
+                case MOVE -> replayer.move(bytes.getInt(), bytes.getInt(), bytes.getInt());
+                case LEVEL -> replayer.level(bytes.getInt(), bytes.getInt());
+                case REMOVE_MOVABLE -> replayer.removeMovable(bytes.getInt());
+                case REMOVE_STATIC -> replayer.removeStatic(bytes.get(), bytes.getInt(), bytes.getInt());
+                case SPAWN_NPC -> replayer.spawnNpc(bytes.getInt(), bytes.getInt(), bytes.getInt(), bytes.getInt());
+                default -> {
+                } // Unknown records are skipped thanks to their length
+            }
+            bytes.position(start + length);
+        }
+    }
+
+    private List<Path> segments() {
+        if (!Files.isDirectory(folder))
+            return List.of();
+        String prefix = gameId + ".";
+        try (Stream<Path> files = Files.list(folder)) {
+            List<Path> segments = new ArrayList<>(files.filter((file) -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(EXTENSION);
+            }).filter((file) -> firstTickOf(file).isPresent()).toList());
+            segments.sort(Comparator.comparingLong((file) -> firstTickOf(file).get()));
+            return segments;
+        } catch (IOException e) {
+            logger.warning("Could not list the journal of " + gameId + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private Optional<Long> firstTickOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Optional.of(Long.parseLong(
+                    name.substring(gameId.length() + 1, name.length() - EXTENSION.length())));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        private Buffer header(int length, byte type) {
+            return putInt(length).putByte(type);
+        }
+
+        private Buffer putByte(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+            return this;
+        }
+
+        private Buffer putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        private Buffer putLong(long value) {
+            return putInt((int) (value >>> 32)).putInt((int) value);
+        }
+
+        private void append(Buffer other) {
+            ensure(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package me.nemo_64.sdp.engine.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+// Splits the map in bands of whole chunk rows, so two regions never write to the same chunk
+final class GameRegions {
+
+    private final GameGrid grid;
+    private final ExecutorService pool;
+    private final int count;
+
+    GameRegions(GameGrid grid, ExecutorService pool, int maxRegions) {
+        this.grid = grid;
+        this.pool = pool;
+        this.count = pool == null ? 1 : Math.max(1, Math.min(maxRegions, grid.getChunkRows()));
+    }
+
+    int regionOf(int y) {
+        return grid.chunkRowOf(y) * count / grid.getChunkRows();
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Runs the phase once per region and waits for every region to finish it. If the wait is interrupted the
+    // regions left are cancelled and the phase throws, as some regions may have only applied part of it
+    void run(IntConsumer phase) {
+        if (count == 1) {
+            phase.accept(0);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int region = i;
+            tasks.add(() -> {
+                phase.accept(region);
+                return null;
+            });
+        }
+        List<Future<Void>> futures = List.of();
+        try {
+            futures = pool.invokeAll(tasks);
+            for (Future<Void> task : futures)
+                task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach((task) -> task.cancel(true));
+            CancellationException cancelled = new CancellationException("Interrupted while waiting for the regions");
+            cancelled.initCause(e);
+            throw cancelled;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A region failed its phase", e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package me.nemo_64.sdp.engine.game;
+
+import com.google.gson.JsonObject;
+import me.nemo_64.sdp.engine.game.element.FoodGameElement;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.GameElementTypes;
+import me.nemo_64.sdp.engine.game.element.InteractionMatrix;
+import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import me.nemo_64.sdp.engine.game.element.NPCGameElement;
+import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Live counts of the elements on the map by the kind of their type, kept up to date as elements are added and
+// removed. Elements of types that were never registered have kind 0 and are counted there
+public class GameStats {
+
+    private static final byte PLAYERS = GameElementTypes.kindOf(PlayerGameElement.class);
+    private static final byte NPCS = GameElementTypes.kindOf(NPCGameElement.class);
+    private static final byte FOOD = GameElementTypes.kindOf(FoodGameElement.class);
+    private static final byte MINES = GameElementTypes.kindOf(MineGameElement.class);
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(InteractionMatrix.MAX_KINDS);
+
+    void added(GameElement element) {
+        counts.incrementAndGet(element.kind());
+    }
+
+    void removed(GameElement element) {
+        counts.decrementAndGet(element.kind());
+    }
+
+    public int count(byte kind) {
+        return counts.get(kind);
+    }
+
+    public int getPlayers() {
+        return counts.get(PLAYERS);
+    }
+
+    public int getNpcs() {
+        return counts.get(NPCS);
+    }
+
+    public int getFood() {
+        return counts.get(FOOD);
+    }
+
+    public int getMines() {
+        return counts.get(MINES);
+    }
+
+    public JsonObject asJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("players", getPlayers());
+        json.addProperty("npcs", getNpcs());
+        json.addProperty("food", getFood());
+        json.addProperty("mines", getMines());
+        return json;
+    }
+
+}
@@ -0,0 +1,58 @@
+package me.nemo_64.sdp.engine.game;
+
+import java.util.Arrays;
+
+// Movements kept as a fixed number of ints each, one after the other, so queuing them allocates nothing once the
+// array is large enough. Buffers are cleared and reused every tick
+final class MoveBuffer {
+
+    private final int fields;
+    private int[] values;
+    private int size;
+
+    MoveBuffer(int fields) {
+        this.fields = fields;
+        this.values = new int[fields * 16];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int move, int field) {
+        return values[move * fields + field];
+    }
+
+    void add(int first, int second) {
+        int at = reserve();
+        values[at] = first;
+        values[at + 1] = second;
+    }
+
+    void add(int first, int second, int third) {
+        int at = reserve();
+        values[at] = first;
+        values[at + 1] = second;
+        values[at + 2] = third;
+    }
+
+    void addAll(MoveBuffer other) {
+        if (values.length < (size + other.size) * fields)
+            values = Arrays.copyOf(values, Math.max(values.length * 2, (size + other.size) * fields));
+        System.arraycopy(other.values, 0, values, size * fields, other.size * fields);
+        size += other.size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private int reserve() {
+        int at = size * fields;
+        if (at + fields > values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+        size++;
+        return at;
+    }
+
+}
@@ -2,7 +2,9 @@ package me.nemo_64.sdp.engine.game;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.Optional;
 
 public record Position(int x, int y) {
@@ -27,16 +29,16 @@ public record Position(int x, int y) {
         return new Position(x() + x, y() + y);
     }
 
-    public Position normalized() {
+    public Position normalized(int width, int height) {
         int x = x();
         int y = y();
         if (x < 0)
-            x = 19;
+            x = width - 1;
         if (y < 0)
-            y = 19;
-        if (x > 19)
+            y = height - 1;
+        if (x >= width)
             x = 0;
-        if (y > 19)
+        if (y >= height)
             y = 0;
         return new Position(x, y);
     }
@@ -46,10 +48,7 @@ public record Position(int x, int y) {
         return (x << 16) ^ y;
     }
 
-    public JsonArray asJson() {
-        JsonArray array = new JsonArray(2);
-        array.add(x());
-        array.add(y());
-        return array;
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginArray().value(x()).value(y()).endArray();
     }
 }
@@ -3,6 +3,7 @@ package me.nemo_64.sdp.engine.game.element;
 import com.google.gson.JsonObject;
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 
 import java.util.Optional;
 
@@ -21,6 +22,11 @@ public final class FoodGameElement extends GameElement.AbstractGameElement {
         super(game, position);
     }
 
+    @Override
+    public byte mapKind() {
+        return MapMessage.FOOD;
+    }
+
     @Override
     public String mapRepresentation() {
         // return "\033[0;92m F \033[0m";
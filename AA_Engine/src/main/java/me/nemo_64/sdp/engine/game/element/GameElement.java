@@ -1,10 +1,17 @@
 package me.nemo_64.sdp.engine.game.element;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import me.nemo_64.sdp.engine.game.EntityStore;
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.utilities.JsonUtil;
+import me.nemo_64.sdp.utilities.NumberUtil;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.Optional;
 
 public interface GameElement {
 
@@ -15,15 +22,28 @@ public interface GameElement {
         REMOVE_BOTH;
     }
 
-    default JsonObject asJson() {
-        JsonObject json = new JsonObject();
-        json.addProperty("type", getClass().getName());
-        json.add("position", getPosition().asJson());
-        return json;
+    // Written straight to the writer, without building the object first
+    default void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        writeJsonFields(out);
+        out.endObject();
+    }
+
+    default void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("type").value(GameElementTypes.codeOf(this));
+        out.name("position");
+        getPosition().writeJson(out);
     }
 
     void assignGame(Game game);
 
+    // Kind of the type in GameElementTypes
+    byte kind();
+
+    default GameElement snapshot() {
+        return this;
+    }
+
     default boolean shouldBeSaved() {
         return true;
     }
@@ -37,6 +57,11 @@ public interface GameElement {
 
     String mapRepresentation();
 
+    // What readers of the map draw on the cell of the element
+    default byte mapKind() {
+        return MapMessage.UNKNOWN;
+    }
+
     Game getGame();
 
     Position getPosition();
@@ -51,42 +76,44 @@ public interface GameElement {
 
         int getRawLevel();
 
-        default MovableGameElement.InteractionResult fight(LeveledGameElement other) {
-            int enemyLevel = other.getLevel();
-            int selfLevel = getLevel();
-            if (enemyLevel > selfLevel)
-                return MovableGameElement.InteractionResult.REMOVE_SELF;
-            if (enemyLevel < selfLevel)
-                return MovableGameElement.InteractionResult.REMOVE_OTHER;
-            return MovableGameElement.InteractionResult.NOTHING;
-        }
-
         @Override
-        default JsonObject asJson() {
-            JsonObject json = GameElement.super.asJson();
-            json.addProperty("level", getRawLevel());
-            return json;
+        default void writeJsonFields(JsonWriter out) throws IOException {
+            GameElement.super.writeJsonFields(out);
+            out.name("level").value(getRawLevel());
         }
     }
 
     interface MovableGameElement extends LeveledGameElement {
-        String token();
+
+        // Tokens used to be saved as strings and NPC ones had an npc- prefix
+        static Optional<Integer> parseToken(JsonObject json) {
+            Optional<Number> number = JsonUtil.getNumber(json, "token");
+            if (number.isPresent())
+                return Optional.of(number.get().intValue());
+            return JsonUtil.getString(json, "token")
+                    .map((token) -> token.startsWith("npc-") ? token.substring("npc-".length()) : token)
+                    .flatMap(NumberUtil::tryParseInt);
+        }
+
+        int token();
+
+        void levelUp();
 
         void setLastMovementTimeStamp(long moment);
 
         long lastMovementTimeStamp();
 
-        InteractionResult interactWith(GameElement other);
-
         @Override
-        default JsonObject asJson() {
-            JsonObject json = LeveledGameElement.super.asJson();
-            json.addProperty("token", token());
-            return json;
+        default void writeJsonFields(JsonWriter out) throws IOException {
+            LeveledGameElement.super.writeJsonFields(out);
+            out.name("token").value(token());
         }
 
         String display();
 
+        @Override
+        MovableGameElement snapshot();
+
         boolean isDisconnected();
 
         void setDisconnected(boolean disconnected);
@@ -95,6 +122,7 @@ public interface GameElement {
 
     abstract class AbstractGameElement implements GameElement {
 
+        private final byte kind = GameElementTypes.kindOf(getClass());
         private Game game;
         private Position position;
         private boolean alive = true;
@@ -104,6 +132,11 @@ public interface GameElement {
             this.position = position;
         }
 
+        @Override
+        public final byte kind() {
+            return kind;
+        }
+
         @Override
         public void assignGame(Game game) {
             this.game = game;
@@ -154,4 +187,118 @@ public interface GameElement {
         }
     }
 
+
+    // Keeps its hot fields in the entity store of its game while it is in one. Elements out of a game, and snapshots,
+    // keep them in their own fields
+    abstract class AbstractMovableGameElement extends AbstractGameElement implements MovableGameElement {
+
+        private final int token;
+        private int level;
+        private long lastMovement = System.currentTimeMillis();
+        private boolean alive = true;
+        private boolean disconnected = false;
+        private EntityStore store;
+        private int slot;
+
+        public AbstractMovableGameElement(Game game, Position position, int level, int token) {
+            super(game, position);
+            this.level = level;
+            this.token = token;
+        }
+
+        // Only called from the thread that ticks the game
+        public void attach(EntityStore store) {
+            this.slot = store.attach(token, level, lastMovement, alive, disconnected);
+            this.store = store;
+        }
+
+        public void detach() {
+            if (store == null)
+                return;
+            level = store.level(slot);
+            lastMovement = store.lastMovement(slot);
+            alive = store.isAlive(slot);
+            disconnected = store.isDisconnected(slot);
+            store.detach(slot);
+            store = null;
+        }
+
+        @Override
+        public int token() {
+            return token;
+        }
+
+        @Override
+        public int getRawLevel() {
+            return store == null ? level : store.level(slot);
+        }
+
+        @Override
+        public void levelUp() {
+            setRawLevel(getRawLevel() + 1);
+        }
+
+        protected void setRawLevel(int level) {
+            if (store == null)
+                this.level = level;
+            else
+                store.setLevel(slot, level);
+        }
+
+        @Override
+        public void setLastMovementTimeStamp(long moment) {
+            if (store == null)
+                lastMovement = moment;
+            else
+                store.setLastMovement(slot, moment);
+        }
+
+        @Override
+        public long lastMovementTimeStamp() {
+            return store == null ? lastMovement : store.lastMovement(slot);
+        }
+
+        @Override
+        public void die() {
+            setAlive(false);
+        }
+
+        @Override
+        public void notifyRemoved() {
+            setAlive(false);
+        }
+
+        @Override
+        public boolean isStillAlive() {
+            return store == null ? alive : store.isAlive(slot);
+        }
+
+        private void setAlive(boolean alive) {
+            if (store == null)
+                this.alive = alive;
+            else
+                store.setAlive(slot, alive);
+        }
+
+        @Override
+        public boolean isDisconnected() {
+            return store == null ? disconnected : store.isDisconnected(slot);
+        }
+
+        @Override
+        public void setDisconnected(boolean disconnected) {
+            if (store == null)
+                this.disconnected = disconnected;
+            else
+                store.setDisconnected(slot, disconnected);
+        }
+
+        // Copies the hot fields to a snapshot, which is never attached
+        protected void copyStateTo(AbstractMovableGameElement copy) {
+            copy.lastMovement = lastMovementTimeStamp();
+            copy.alive = isStillAlive();
+            copy.disconnected = isDisconnected();
+        }
+    }
+
 }
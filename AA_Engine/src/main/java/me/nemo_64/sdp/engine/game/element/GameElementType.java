@@ -0,0 +1,20 @@
+package me.nemo_64.sdp.engine.game.element;
+
+import me.nemo_64.sdp.engine.game.Position;
+
+import java.util.UUID;
+
+// What the engine knows of a registered element type. The kind indexes the interaction matrix and the stats, and is
+// also the tag of the type on checkpoints and journals, so a type must get the same kind on every run.
+// Types without a snapshot code are left out of the snapshot and types without a decoder out of binary checkpoints
+public record GameElementType(String code, Class<? extends GameElement> type, byte kind, byte snapshotCode,
+        RecordDecoder decoder) {
+
+    public interface RecordDecoder {
+
+        // Null if the record is not valid. Level and token are 0 and player null for types that don't have them
+        GameElement decode(Position position, int level, int token, UUID player);
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package me.nemo_64.sdp.engine.game.element;
+
+import com.google.gson.JsonObject;
+import me.nemo_64.sdp.engine.Main;
+import me.nemo_64.sdp.utilities.snapshot.SnapshotLayout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Short codes the elements are saved and sent with, and the function that parses each of them. Elements that are
+// not registered keep using their class name, whose static parse method is looked up once and then reused. Every
+// registered type also gets a small kind number and a descriptor with everything else the engine needs of it. The
+// built-in types have fixed kinds, as the kind is what checkpoints and journals tag the elements with
+public final class GameElementTypes {
+
+    private static final Logger LOGGER = Logger.getLogger(GameElementTypes.class.getName());
+
+    static {
+        LOGGER.setParent(Main.ENGINE_LOGGER);
+    }
+
+    private GameElementTypes() {
+    }
+
+    public static final byte FOOD = 1;
+    public static final byte MINE = 2;
+    public static final byte NPC = 3;
+    public static final byte PLAYER = 4;
+
+    private static final Map<String, Function<JsonObject, ? extends GameElement>> PARSERS = new ConcurrentHashMap<>();
+    // Names that have no parser, so the class is not looked up again every time an element names it
+    private static final Set<String> MISSING = ConcurrentHashMap.newKeySet();
+    private static final Map<Class<?>, String> CODES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Byte> KINDS = new ConcurrentHashMap<>();
+    private static final GameElementType[] TYPES = new GameElementType[InteractionMatrix.MAX_KINDS];
+    // Classes whose kind was looked up while neither them nor their superclasses were registered
+    private static final Set<Class<?>> WITHOUT_KIND = ConcurrentHashMap.newKeySet();
+    // Subclasses of a registered type share its kind. Types are registered before any element of them is created, as
+    // a kind once looked up is kept
+    private static final ClassValue<Byte> KIND_OF = new ClassValue<>() {
+        @Override
+        protected Byte computeValue(Class<?> type) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                Byte kind = KINDS.get(current);
+                if (kind != null)
+                    return kind;
+            }
+            WITHOUT_KIND.add(type);
+            return (byte) 0;
+        }
+    };
+
+    static {
+        register("food", FoodGameElement.class, FoodGameElement::parse, FOOD, SnapshotLayout.FOOD,
+                (position, level, token, player) -> new FoodGameElement(null, position));
+        register("mine", MineGameElement.class, MineGameElement::parse, MINE, SnapshotLayout.MINE,
+                (position, level, token, player) -> new MineGameElement(null, position));
+        register("npc", NPCGameElement.class, NPCGameElement::parse, NPC, SnapshotLayout.NPC,
+                (position, level, token, player) -> level <= 0 ? null
+                        : new NPCGameElement(null, position, level, token));
+        register("player", PlayerGameElement.class, PlayerGameElement::parse, PLAYER, SnapshotLayout.PLAYER,
+                (position, level, token, player) -> level <= 0 || player == null ? null
+                        : Main.PLAYER_MANAGER.getPlayer(player)
+                                .map((loaded) -> new PlayerGameElement(null, position, loaded, level, token))
+                                .orElse(null));
+    }
+
+    public static <T extends GameElement> GameElementType register(String code, Class<T> type,
+            Function<JsonObject, ? extends T> parser) {
+        return register(code, type, parser, (byte) 0, null);
+    }
+
+    // Takes the first kind nobody has
+    public static synchronized <T extends GameElement> GameElementType register(String code, Class<T> type,
+            Function<JsonObject, ? extends T> parser, byte snapshotCode, GameElementType.RecordDecoder decoder) {
+        for (int kind = PLAYER + 1; kind < TYPES.length; kind++) {
+            if (TYPES[kind] == null)
+                return register(code, type, parser, (byte) kind, snapshotCode, decoder);
+        }
+        throw new IllegalArgumentException("Can not register " + code + ", there are no kinds left");
+    }
+
+    // Saves made before the codes existed name the type by its class, so that name is registered too
+    public static synchronized <T extends GameElement> GameElementType register(String code, Class<T> type,
+            Function<JsonObject, ? extends T> parser, byte kind, byte snapshotCode,
+            GameElementType.RecordDecoder decoder) {
+        if (kind <= 0 || kind >= TYPES.length)
+            throw new IllegalArgumentException("The kind " + kind + " of " + code + " is not a valid kind");
+        if (TYPES[kind] != null)
+            throw new IllegalArgumentException("The kind " + kind + " is already taken by " + TYPES[kind].code());
+        for (Class<?> looked : WITHOUT_KIND) {
+            if (type.isAssignableFrom(looked))
+                throw new IllegalStateException("Can not register " + code + ", the kind of " + looked.getName()
+                        + " was already looked up without it");
+        }
+        if (PARSERS.putIfAbsent(code, parser) != null)
+            throw new IllegalArgumentException("The element code " + code + " is already registered");
+        PARSERS.put(type.getName(), parser);
+        MISSING.remove(type.getName());
+        CODES.put(type, code);
+        KINDS.put(type, kind);
+        TYPES[kind] = new GameElementType(code, type, kind, snapshotCode, decoder);
+        return TYPES[kind];
+    }
+
+    // Only meant for tests, which register their own types and must not leave them behind for the rest
+    public static synchronized void unregister(String code) {
+        for (int kind = 1; kind < TYPES.length; kind++) {
+            GameElementType registered = TYPES[kind];
+            if (registered == null || !registered.code().equals(code))
+                continue;
+            TYPES[kind] = null;
+            PARSERS.remove(code);
+            PARSERS.remove(registered.type().getName());
+            CODES.remove(registered.type());
+            KINDS.remove(registered.type());
+            KIND_OF.remove(registered.type());
+            return;
+        }
+    }
+
+    public static Optional<GameElementType> typeOf(byte kind) {
+        return kind <= 0 || kind >= TYPES.length ? Optional.empty() : Optional.ofNullable(TYPES[kind]);
+    }
+
+    public static Optional<GameElementType> typeOf(GameElement element) {
+        return typeOf(element.kind());
+    }
+
+    // 0 for types that were never registered
+    public static byte kindOf(Class<?> type) {
+        return KIND_OF.get(type);
+    }
+
+    public static String codeOf(GameElement element) {
+        return CODES.getOrDefault(element.getClass(), element.getClass().getName());
+    }
+
+    // The parser returns null if the JSON does not describe a valid element
+    public static Optional<Function<JsonObject, ? extends GameElement>> parserOf(String type) {
+        Function<JsonObject, ? extends GameElement> parser = PARSERS.get(type);
+        if (parser != null)
+            return Optional.of(parser);
+        if (MISSING.contains(type))
+            return Optional.empty();
+        Optional<Function<JsonObject, ? extends GameElement>> found = findParser(type);
+        if (found.isPresent())
+            PARSERS.putIfAbsent(type, found.get());
+        else
+            MISSING.add(type);
+        return found;
+    }
+
+    private static Optional<Function<JsonObject, ? extends GameElement>> findParser(String type) {
+        try {
+            Class<?> clazz = Class.forName(type);
+            Method parse = clazz.getDeclaredMethod("parse", JsonObject.class);
+            if (!Modifier.isStatic(parse.getModifiers())
+                    || !GameElement.class.isAssignableFrom(parse.getReturnType())) {
+                LOGGER.warning("The parse method of " + type + " is not static or does not return an element");
+                return Optional.empty();
+            }
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(parse);
+            @SuppressWarnings("unchecked")
+            Function<JsonObject, ? extends GameElement> method = MethodHandleProxies.asInterfaceInstance(Function.class,
+                    handle);
+            return Optional.of((json) -> {
+                try {
+                    return method.apply(json);
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Could not parse an element of type " + type, e);
+                    return null;
+                }
+            });
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            LOGGER.warning("There is no parser for elements of type " + type + ": " + e);
+            return Optional.empty();
+        }
+    }
+
+}
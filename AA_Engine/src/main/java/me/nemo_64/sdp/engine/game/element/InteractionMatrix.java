@@ -0,0 +1,72 @@
+package me.nemo_64.sdp.engine.game.element;
+
+import me.nemo_64.sdp.engine.game.element.GameElement.InteractionResult;
+
+// What happens when a mover steps on a cell with another element, indexed by the kinds of both. A rule is the result
+// plus flags for its side effects, so resolving an interaction is a table read instead of a chain of type tests.
+// Pairs without a rule do nothing
+public final class InteractionMatrix {
+
+    private InteractionMatrix() {
+    }
+
+    public static final int MAX_KINDS = 16;
+
+    public static final byte NOTHING = 0;
+    public static final byte REMOVE_OTHER = 1;
+    public static final byte REMOVE_SELF = 2;
+    public static final byte REMOVE_BOTH = 3;
+    private static final byte RESULT_MASK = 3;
+    // The element with the highest level removes the other, ties do nothing. Only valid against leveled elements
+    public static final byte FIGHT = 4;
+    // The mover levels up before the result is applied
+    public static final byte LEVEL_UP = 8;
+
+    private static final InteractionResult[] RESULTS = new InteractionResult[RESULT_MASK + 1];
+    private static final byte[] RULES = new byte[MAX_KINDS * MAX_KINDS];
+
+    static {
+        RESULTS[NOTHING] = InteractionResult.NOTHING;
+        RESULTS[REMOVE_OTHER] = InteractionResult.REMOVE_OTHER;
+        RESULTS[REMOVE_SELF] = InteractionResult.REMOVE_SELF;
+        RESULTS[REMOVE_BOTH] = InteractionResult.REMOVE_BOTH;
+
+        register(PlayerGameElement.class, MineGameElement.class, REMOVE_BOTH);
+        register(PlayerGameElement.class, FoodGameElement.class, (byte) (REMOVE_OTHER | LEVEL_UP));
+        register(PlayerGameElement.class, PlayerGameElement.class, FIGHT);
+        register(PlayerGameElement.class, NPCGameElement.class, FIGHT);
+        register(NPCGameElement.class, PlayerGameElement.class, FIGHT);
+        register(NPCGameElement.class, NPCGameElement.class, FIGHT);
+    }
+
+    // Both types must be registered in GameElementTypes first
+    public static void register(Class<? extends GameElement.MovableGameElement> mover,
+            Class<? extends GameElement> other, byte rule) {
+        int moverKind = GameElementTypes.kindOf(mover);
+        int otherKind = GameElementTypes.kindOf(other);
+        if (moverKind == 0 || otherKind == 0)
+            throw new IllegalArgumentException("Can not add a rule for " + mover.getName() + " and "
+                    + other.getName() + ", both types must be registered");
+        if ((rule & FIGHT) != 0 && !GameElement.LeveledGameElement.class.isAssignableFrom(other))
+            throw new IllegalArgumentException(other.getName() + " has no level to fight with");
+        RULES[moverKind * MAX_KINDS + otherKind] = rule;
+    }
+
+    // Applies the side effects of the rule and returns what has to be removed
+    public static InteractionResult resolve(GameElement.MovableGameElement mover, GameElement other) {
+        byte rule = RULES[mover.kind() * MAX_KINDS + other.kind()];
+        if ((rule & LEVEL_UP) != 0)
+            mover.levelUp();
+        if ((rule & FIGHT) != 0) {
+            int enemyLevel = ((GameElement.LeveledGameElement) other).getLevel();
+            int selfLevel = mover.getLevel();
+            if (enemyLevel > selfLevel)
+                return InteractionResult.REMOVE_SELF;
+            if (enemyLevel < selfLevel)
+                return InteractionResult.REMOVE_OTHER;
+            return InteractionResult.NOTHING;
+        }
+        return RESULTS[rule & RESULT_MASK];
+    }
+
+}
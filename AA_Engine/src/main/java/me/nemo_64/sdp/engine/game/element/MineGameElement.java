@@ -3,6 +3,7 @@ package me.nemo_64.sdp.engine.game.element;
 import com.google.gson.JsonObject;
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 
 import java.util.Optional;
 
@@ -21,6 +22,11 @@ public class MineGameElement extends GameElement.AbstractGameElement {
         super(game, position);
     }
 
+    @Override
+    public byte mapKind() {
+        return MapMessage.MINE;
+    }
+
     @Override
     public String mapRepresentation() {
         // return "\033[0;91m M \033[0m";
@@ -4,15 +4,14 @@ import com.google.gson.JsonObject;
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.engine.game.Position;
 import me.nemo_64.sdp.utilities.JsonUtil;
+import me.nemo_64.sdp.utilities.KafkaMessage;
 import me.nemo_64.sdp.utilities.KafkaTopic;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
-public class NPCGameElement extends GameElement.AbstractGameElement implements GameElement.MovableGameElement {
+public class NPCGameElement extends GameElement.AbstractMovableGameElement {
 
     public static NPCGameElement parse(JsonObject json) {
         if (!json.has("position"))
@@ -23,41 +22,26 @@ public class NPCGameElement extends GameElement.AbstractGameElement implements G
         Optional<Integer> level = JsonUtil.getNumber(json, "level").map(Number::intValue);
         if (level.isEmpty() || level.get() <= 0)
             return null;
-        Optional<String> token = JsonUtil.getString(json, "token");
+        Optional<Integer> token = MovableGameElement.parseToken(json);
         if (token.isEmpty())
             return null;
         return new NPCGameElement(null, pos.get(), level.get(), token.get());
     }
 
-    private final int level;
-    private final String token;
-    private final AtomicLong lastMovement = new AtomicLong(System.currentTimeMillis());
-    private final AtomicBoolean disconnected = new AtomicBoolean(false);
-
-    public NPCGameElement(Game game, Position position, int level, String token) {
-        super(game, position);
-        this.level = level;
-        this.token = token;
-    }
-
-    @Override
-    public void die() {
-        getGame().getProducer().send(new ProducerRecord<>(KafkaTopic.NPC_JOIN_LEAVE, "die:" + token));
+    public NPCGameElement(Game game, Position position, int level, int token) {
+        super(game, position, level, token);
     }
 
     @Override
-    public String token() {
-        return token;
+    public NPCGameElement snapshot() {
+        NPCGameElement copy = new NPCGameElement(getGame(), getPosition(), getRawLevel(), token());
+        copyStateTo(copy);
+        return copy;
     }
 
     @Override
-    public void setLastMovementTimeStamp(long moment) {
-        lastMovement.set(moment);
-    }
-
-    @Override
-    public long lastMovementTimeStamp() {
-        return lastMovement.get();
+    public void die() {
+        getGame().send(KafkaTopic.NPC_JOIN_LEAVE, KafkaMessage.npcDie(token()));
     }
 
     @Override
@@ -66,10 +50,8 @@ public class NPCGameElement extends GameElement.AbstractGameElement implements G
     }
 
     @Override
-    public InteractionResult interactWith(GameElement other) {
-        if (!(other instanceof LeveledGameElement enemy))
-            return InteractionResult.NOTHING;
-        return fight(enemy);
+    public byte mapKind() {
+        return MapMessage.NPC;
     }
 
     @Override
@@ -78,21 +60,6 @@ public class NPCGameElement extends GameElement.AbstractGameElement implements G
         return "NPC";
     }
 
-    @Override
-    public boolean isDisconnected() {
-        return disconnected.get();
-    }
-
-    @Override
-    public void setDisconnected(boolean disconnected) {
-        this.disconnected.set(disconnected);
-    }
-
-    @Override
-    public int getRawLevel() {
-        return level;
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -101,20 +68,20 @@ public class NPCGameElement extends GameElement.AbstractGameElement implements G
             return false;
         if (!super.equals(o))
             return false;
-        return Objects.equals(token, that.token);
+        return token() == that.token();
     }
 
     @Override
     public String toString() {
         return "NPCGameElement{" +
-                "level=" + level +
-                ", token='" + token + '\'' +
-                ", lastMovement=" + lastMovement +
+                "level=" + getRawLevel() +
+                ", token=" + token() +
+                ", lastMovement=" + lastMovementTimeStamp() +
                 "} " + super.toString();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), token);
+        return Objects.hash(super.hashCode(), token());
     }
 }
@@ -1,21 +1,22 @@
 package me.nemo_64.sdp.engine.game.element;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import me.nemo_64.sdp.engine.Main;
 import me.nemo_64.sdp.engine.game.Game;
+import me.nemo_64.sdp.engine.game.GameClimate;
 import me.nemo_64.sdp.engine.game.Position;
 import me.nemo_64.sdp.utilities.JsonUtil;
 import me.nemo_64.sdp.utilities.KafkaTopic;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 import me.nemo_64.sdp.utilities.player.LoadedPlayer;
-import org.apache.kafka.clients.producer.ProducerRecord;
 
+import java.io.IOException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
-public class PlayerGameElement extends GameElement.AbstractGameElement implements GameElement.MovableGameElement {
+public class PlayerGameElement extends GameElement.AbstractMovableGameElement {
 
     public static PlayerGameElement parse(JsonObject json) {
         if (!json.has("position"))
@@ -26,7 +27,7 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
         Optional<Integer> level = JsonUtil.getNumber(json, "level").map(Number::intValue);
         if (level.isEmpty() || level.get() <= 0)
             return null;
-        Optional<String> token = JsonUtil.getString(json, "token");
+        Optional<Integer> token = MovableGameElement.parseToken(json);
         if (token.isEmpty())
             return null;
         Optional<UUID> id = JsonUtil.getUUID(json, "player");
@@ -39,24 +40,27 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
     }
 
     private final LoadedPlayer player;
-    private int level;
-    private final String token;
-    private final AtomicLong lastMovement = new AtomicLong(System.currentTimeMillis());
-    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    // Level with the temperature modifier applied, 0 when it has to be computed again
+    private int effectiveLevel;
 
-    public PlayerGameElement(Game game, Position position, LoadedPlayer player, int level, String token) {
-        super(game, position);
+    public PlayerGameElement(Game game, Position position, LoadedPlayer player, int level, int token) {
+        super(game, position, level, token);
         this.player = player;
-        this.token = token;
-        this.level = level;
     }
 
     @Override
-    public JsonObject asJson() {
-        JsonObject json = MovableGameElement.super.asJson();
-        json.addProperty("player", player.getId().toString());
-        json.addProperty("player-name", player.getAlias());
-        return json;
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        super.writeJsonFields(out);
+        out.name("player").value(player.getId().toString());
+        out.name("player-name").value(player.getAlias());
+    }
+
+    @Override
+    public PlayerGameElement snapshot() {
+        PlayerGameElement copy = new PlayerGameElement(getGame(), getPosition(), player, getRawLevel(), token());
+        copyStateTo(copy);
+        copy.effectiveLevel = effectiveLevel;
+        return copy;
     }
 
     @Override
@@ -67,7 +71,7 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
     @Override
     public void die() {
         super.die();
-        getGame().getProducer().send(new ProducerRecord<>(KafkaTopic.PLAYER_GAME_UPDATES, "death:" + token()));
+        getGame().send(KafkaTopic.PLAYER_GAME_UPDATES, "death:" + token());
     }
 
     @Override
@@ -75,29 +79,42 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
 
     }
 
-    public int getRawLevel() {
-        return level;
+    public int getLevel() {
+        int effective = effectiveLevel;
+        if (effective == 0) {
+            effective = Math.max(getRawLevel() + getTemperatureModifier(), 1);
+            effectiveLevel = effective;
+        }
+        return effective;
     }
 
-    public int getLevel() {
-        return Math.max(getRawLevel() + getTemperatureModifier(), 1);
+    public void invalidateLevel() {
+        effectiveLevel = 0;
     }
 
+    @Override
     public void levelUp() {
-        level++;
+        super.levelUp();
+        invalidateLevel();
+    }
+
+    public void setLevel(int level) {
+        setRawLevel(level);
+        invalidateLevel();
+    }
+
+    @Override
+    public void setPosition(Position pos) {
+        super.setPosition(pos);
+        invalidateLevel();
     }
 
     public int getTemperatureModifier() {
-        if (getPosition().x() < 0 || getPosition().x() >= 20)
-            return 0;
-        if (getPosition().y() < 0 || getPosition().y() >= 20)
-            return 0;
-        double temperature = getGame().getCity(getPosition().x(), getPosition().y()).temperature();
-        if (temperature <= 10)
-            return player.getColdEffect();
-        if (temperature >= 25)
-            return player.getHotEffect();
-        return 0;
+        return switch (getGame().getClimateZone(getPosition().x(), getPosition().y())) {
+            case GameClimate.COLD -> player.getColdEffect();
+            case GameClimate.HOT -> player.getHotEffect();
+            default -> 0;
+        };
     }
 
     public LoadedPlayer getPlayer() {
@@ -105,21 +122,8 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
     }
 
     @Override
-    public String token() {
-        return token;
-    }
-
-    @Override
-    public InteractionResult interactWith(GameElement other) {
-        if (other instanceof MineGameElement) {
-            return InteractionResult.REMOVE_BOTH;
-        } else if (other instanceof FoodGameElement) {
-            levelUp();
-            return InteractionResult.REMOVE_OTHER;
-        } else if (other instanceof LeveledGameElement enemy) {
-            return fight(enemy);
-        }
-        return InteractionResult.NOTHING;
+    public byte mapKind() {
+        return MapMessage.PLAYER;
     }
 
     @Override
@@ -136,16 +140,6 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
         return alias;
     }
 
-    @Override
-    public void setLastMovementTimeStamp(long moment) {
-        lastMovement.set(moment);
-    }
-
-    @Override
-    public long lastMovementTimeStamp() {
-        return lastMovement.get();
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -154,21 +148,11 @@ public class PlayerGameElement extends GameElement.AbstractGameElement implement
             return false;
         if (!super.equals(o))
             return false;
-        return Objects.equals(token, that.token);
-    }
-
-    @Override
-    public boolean isDisconnected() {
-        return disconnected.get();
-    }
-
-    @Override
-    public void setDisconnected(boolean disconnected) {
-        this.disconnected.set(disconnected);
+        return token() == that.token();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), token);
+        return Objects.hash(super.hashCode(), token());
     }
 }
@@ -0,0 +1,21 @@
+package me.nemo_64.sdp.engine.game.generator;
+
+import me.nemo_64.sdp.engine.game.GameFrame;
+import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.utilities.player.LoadedPlayer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Fills the map of a new game and decides where the elements that join later appear
+public interface MapGenerator {
+
+    // Elements are created without a game, the game assigns itself when they are added. Players are mapped by token
+    List<GameElement> generate(int width, int height, Map<String, LoadedPlayer> players);
+
+    // Empty if there is no free cell left. Only called from the thread that ticks the game, with its latest frame
+    Optional<Position> spawnPosition(GameFrame frame, int width, int height);
+
+}
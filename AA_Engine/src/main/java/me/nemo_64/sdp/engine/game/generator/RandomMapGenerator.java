@@ -0,0 +1,171 @@
+package me.nemo_64.sdp.engine.game.generator;
+
+import me.nemo_64.sdp.engine.Main;
+import me.nemo_64.sdp.engine.game.GameFrame;
+import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.engine.game.element.FoodGameElement;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+import me.nemo_64.sdp.engine.util.ConfigurationEntry;
+import me.nemo_64.sdp.utilities.configuration.Config;
+import me.nemo_64.sdp.utilities.player.LoadedPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+// Places food and mines at random and spawns the players on free cells. The map is generated in square chunks, each
+// with its own random split from the seed in chunk order, so a seed gives the same map however the chunks are spread
+// between threads. Elements that join later spawn on a random cell that is free on the frame they are asked with,
+// and only if random cells keep being taken is a free cell allocator built, which is dropped once used
+public class RandomMapGenerator implements MapGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(RandomMapGenerator.class.getName());
+
+    static {
+        LOGGER.setParent(Main.ENGINE_LOGGER);
+    }
+
+    private static final double FOOD_PROBABILITY = 0.2;
+    private static final double MINE_PROBABILITY = 0.15;
+    private static final int CHUNK_SIZE = 32;
+    // Smaller maps generate faster on a single thread
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // Tries before giving up on random cells and looking for the free ones
+    private static final int SPAWN_TRIES = 32;
+
+    // Uses the configured seed, or a random one that is logged so the map can be generated again. The seed is mixed
+    // with the id of the game, so the games hosted with the same configuration are not all the same
+    public static RandomMapGenerator fromConfig(String gameId) {
+        Optional<Long> configured = Config.getOptionalLong(ConfigurationEntry.MAP_SEED);
+        long seed = configured.orElseGet(() -> new SplittableRandom().nextLong());
+        if (configured.isEmpty())
+            LOGGER.fine("Generating " + gameId + " with seed " + seed);
+        return new RandomMapGenerator(seedOf(seed, gameId));
+    }
+
+    static long seedOf(long seed, String gameId) {
+        long mixed = seed;
+        for (int i = 0; i < gameId.length(); i++)
+            mixed = mixed * 31 + gameId.charAt(i);
+        return mixed;
+    }
+
+    private final SplittableRandom random;
+    private final int parallelThreshold;
+    // Cells handed out since the frame was captured, which the frame does not show yet
+    private final List<Position> spawned = new ArrayList<>();
+    private GameFrame spawnFrame;
+
+    public RandomMapGenerator(long seed) {
+        this(seed, PARALLEL_THRESHOLD);
+    }
+
+    RandomMapGenerator(long seed, int parallelThreshold) {
+        this.random = new SplittableRandom(seed);
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Override
+    public List<GameElement> generate(int width, int height, Map<String, LoadedPlayer> players) {
+        int chunksWide = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int chunkCount = chunksWide * ((height + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        SplittableRandom[] randoms = new SplittableRandom[chunkCount];
+        for (int i = 0; i < chunkCount; i++)
+            randoms[i] = random.split();
+        IntStream indexes = IntStream.range(0, chunkCount);
+        if ((long) width * height >= parallelThreshold)
+            indexes = indexes.parallel();
+        // Chunks are collected in chunk order even when generated in parallel
+        List<List<GameElement>> chunks = indexes.mapToObj((chunk) -> generateChunk(chunk % chunksWide * CHUNK_SIZE,
+                chunk / chunksWide * CHUNK_SIZE, width, height, randoms[chunk])).toList();
+
+        List<GameElement> elements = new ArrayList<>(chunks.stream().mapToInt(List::size).sum() + players.size());
+        SpawnAllocator spawns = new SpawnAllocator(width, height);
+        for (List<GameElement> chunk : chunks) {
+            for (GameElement element : chunk) {
+                elements.add(element);
+                spawns.occupy(element.getPosition().x(), element.getPosition().y());
+            }
+        }
+        players.forEach((token, player) -> {
+            Optional<Position> position = spawns.allocate(random);
+            if (position.isEmpty()) {
+                LOGGER.warning("No free cell left to spawn " + player.getAlias());
+                return;
+            }
+            elements.add(new PlayerGameElement(null, position.get(), player, 1, Integer.parseInt(token)));
+        });
+        return elements;
+    }
+
+    private static List<GameElement> generateChunk(int startX, int startY, int width, int height,
+            SplittableRandom random) {
+        int endX = Math.min(startX + CHUNK_SIZE, width);
+        int endY = Math.min(startY + CHUNK_SIZE, height);
+        List<GameElement> elements = new ArrayList<>();
+        for (int y = startY; y < endY; y++) {
+            for (int x = startX; x < endX; x++) {
+                if (random.nextDouble() <= FOOD_PROBABILITY)
+                    elements.add(new FoodGameElement(null, new Position(x, y)));
+                else if (random.nextDouble() <= MINE_PROBABILITY)
+                    elements.add(new MineGameElement(null, new Position(x, y)));
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public Optional<Position> spawnPosition(GameFrame frame, int width, int height) {
+        if (frame != spawnFrame) {
+            spawned.clear();
+            spawnFrame = frame;
+        }
+        for (int i = 0; i < SPAWN_TRIES; i++) {
+            Position position = new Position(random.nextInt(width), random.nextInt(height));
+            if (isFree(frame, position))
+                return Optional.of(spawn(position));
+        }
+        // The map is almost full, so the free cells are counted
+        SpawnAllocator spawns = new SpawnAllocator(width, height);
+        for (GameElement element : frame.elements())
+            spawns.occupy(element.getPosition().x(), element.getPosition().y());
+        for (Position position : spawned)
+            spawns.occupy(position.x(), position.y());
+        return spawns.allocate(random).map(this::spawn);
+    }
+
+    private Position spawn(Position position) {
+        spawned.add(position);
+        return position;
+    }
+
+    private boolean isFree(GameFrame frame, Position position) {
+        if (spawned.contains(position))
+            return false;
+        int chunk = frame.chunkOf(position.x(), position.y());
+        // The elements of a chunk are sorted by row and column
+        int low = 0;
+        int high = frame.chunkElementCount(chunk) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Position found = frame.chunkElement(chunk, middle).getPosition();
+            int order = found.y() != position.y() ? Integer.compare(found.y(), position.y())
+                    : Integer.compare(found.x(), position.x());
+            if (order == 0)
+                return false;
+            if (order < 0)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return true;
+    }
+
+}
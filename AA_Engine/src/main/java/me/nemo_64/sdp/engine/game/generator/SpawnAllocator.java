@@ -0,0 +1,72 @@
+package me.nemo_64.sdp.engine.game.generator;
+
+import me.nemo_64.sdp.engine.game.Position;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+// Hands out random free cells. Free cells are bits of a bitmap and a Fenwick tree counts the free cells of every
+// word, so picking the n-th free cell takes a logarithmic number of steps no matter how full the map is
+final class SpawnAllocator {
+
+    private final int width;
+    private final long[] free;
+    private final int[] tree;
+    private int freeCells;
+
+    SpawnAllocator(int width, int height) {
+        this.width = width;
+        int cells = width * height;
+        this.free = new long[(cells + 63) >>> 6];
+        this.tree = new int[free.length + 1];
+        for (int i = 0; i < free.length; i++) {
+            int bits = Math.min(64, cells - (i << 6));
+            free[i] = bits == 64 ? -1L : (1L << bits) - 1;
+            tree[i + 1] += bits;
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent < tree.length)
+                tree[parent] += tree[i + 1];
+        }
+        this.freeCells = cells;
+    }
+
+    int freeCells() {
+        return freeCells;
+    }
+
+    void occupy(int x, int y) {
+        int cell = y * width + x;
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        if ((free[word] & bit) == 0)
+            return;
+        free[word] &= ~bit;
+        freeCells--;
+        for (int i = word + 1; i < tree.length; i += i & -i)
+            tree[i]--;
+    }
+
+    // Empty once every cell is taken
+    Optional<Position> allocate(SplittableRandom random) {
+        if (freeCells == 0)
+            return Optional.empty();
+        int remaining = random.nextInt(freeCells);
+        // Finds the word that holds the free cell by walking down the tree
+        int word = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step != 0; step >>>= 1) {
+            int next = word + step;
+            if (next < tree.length && tree[next] <= remaining) {
+                word = next;
+                remaining -= tree[next];
+            }
+        }
+        long bits = free[word];
+        for (int i = 0; i < remaining; i++)
+            bits &= bits - 1;
+        int cell = (word << 6) | Long.numberOfTrailingZeros(bits);
+        Position position = new Position(cell % width, cell / width);
+        occupy(position.x(), position.y());
+        return Optional.of(position);
+    }
+
+}
@@ -1,9 +1,7 @@
 package me.nemo_64.sdp.engine.game.tasks;
 
 import me.nemo_64.sdp.engine.game.Game;
-import me.nemo_64.sdp.engine.game.element.GameElement;
 
-import java.util.Collection;
 import java.util.TimerTask;
 
 public class CheckDisconnectsTimerTask extends TimerTask {
@@ -16,21 +14,14 @@ public class CheckDisconnectsTimerTask extends TimerTask {
 
     @Override
     public void run() {
-        Collection<GameElement.MovableGameElement> movable = game.getMovableElements();
         long consideredDisconnected = System.currentTimeMillis() - 1000;
-        for (GameElement.MovableGameElement element : movable) {
-            if (element.lastMovementTimeStamp() < consideredDisconnected) {
-                if (element.isStillAlive() && !element.isDisconnected()) {
-                    element.setDisconnected(true);
-                    System.out.println(element.token() + " seems to have disconnected");
-                    game.getLogger().info(element.token() + " seems to have disconnected.");
-                }
-            } else if (element.isStillAlive() && element.isDisconnected()) {
-                element.setDisconnected(false);
-                System.out.println(element.token() + " seems to have reconnected");
-                game.getLogger().info(element.token() + " seems to have reconnected");
-            }
-        }
+        game.getEntities().sweepDisconnected(consideredDisconnected, (token) -> {
+            System.out.println(token + " seems to have disconnected");
+            game.getLogger().info(token + " seems to have disconnected.");
+        }, (token) -> {
+            System.out.println(token + " seems to have reconnected");
+            game.getLogger().info(token + " seems to have reconnected");
+        });
     }
 
 }
@@ -0,0 +1,90 @@
+package me.nemo_64.sdp.engine.game.tasks;
+
+import me.nemo_64.sdp.engine.game.GameFrame;
+import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.utilities.map.MapMessage;
+
+import java.util.List;
+
+// What the readers of the map see on the cells of a frame: the kind of the first element of the cell and, if it is a
+// movable, its token. Only the cells with elements are visited, and the frame the readers have is the board, so
+// nothing is kept per cell
+final class MapBoard {
+
+    interface CellListener {
+
+        void changed(int x, int y, byte kind, int token);
+
+    }
+
+    private MapBoard() {
+    }
+
+    // Tells the listener about every cell with something drawn on it, row by row
+    static void drawAll(GameFrame frame, CellListener listener) {
+        List<GameElement> elements = frame.elements();
+        for (int i = 0; i < elements.size(); i = nextCell(elements, i)) {
+            GameElement first = elements.get(i);
+            listener.changed(first.getPosition().x(), first.getPosition().y(), kindOf(first), tokenOf(first));
+        }
+    }
+
+    // Tells the listener about the cells of the chunk that are drawn differently than on the previous frame. Both
+    // lists of elements are sorted by row and column, so they are walked side by side
+    static void drawChunk(GameFrame frame, GameFrame previous, int chunk, CellListener listener) {
+        int count = frame.chunkElementCount(chunk);
+        int previousCount = previous.chunkElementCount(chunk);
+        int next = 0;
+        int previousNext = 0;
+        while (next < count || previousNext < previousCount) {
+            GameElement current = next < count ? frame.chunkElement(chunk, next) : null;
+            GameElement old = previousNext < previousCount ? previous.chunkElement(chunk, previousNext) : null;
+            int order = current == null ? 1 : old == null ? -1 : compare(current.getPosition(), old.getPosition());
+            if (order > 0) {
+                listener.changed(old.getPosition().x(), old.getPosition().y(), MapMessage.EMPTY, 0);
+            } else {
+                byte kind = kindOf(current);
+                int token = tokenOf(current);
+                if (order < 0 || kind != kindOf(old) || token != tokenOf(old))
+                    listener.changed(current.getPosition().x(), current.getPosition().y(), kind, token);
+                next = nextCell(frame, chunk, next, count);
+            }
+            if (order >= 0)
+                previousNext = nextCell(previous, chunk, previousNext, previousCount);
+        }
+    }
+
+    private static byte kindOf(GameElement element) {
+        return element.mapKind();
+    }
+
+    private static int tokenOf(GameElement element) {
+        return MapMessage.isMovable(element.mapKind()) && element instanceof GameElement.MovableGameElement movable
+                ? movable.token()
+                : 0;
+    }
+
+    private static int compare(Position position, Position other) {
+        int rows = Integer.compare(position.y(), other.y());
+        return rows != 0 ? rows : Integer.compare(position.x(), other.x());
+    }
+
+    // Index of the first element after the ones on the same cell as the element at index
+    private static int nextCell(List<GameElement> elements, int index) {
+        Position position = elements.get(index).getPosition();
+        do {
+            index++;
+        } while (index < elements.size() && elements.get(index).getPosition().equals(position));
+        return index;
+    }
+
+    private static int nextCell(GameFrame frame, int chunk, int index, int count) {
+        Position position = frame.chunkElement(chunk, index).getPosition();
+        do {
+            index++;
+        } while (index < count && frame.chunkElement(chunk, index).getPosition().equals(position));
+        return index;
+    }
+
+}
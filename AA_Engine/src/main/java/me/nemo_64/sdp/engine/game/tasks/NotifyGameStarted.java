@@ -2,7 +2,6 @@ package me.nemo_64.sdp.engine.game.tasks;
 
 import me.nemo_64.sdp.engine.game.Game;
 import me.nemo_64.sdp.utilities.KafkaTopic;
-import org.apache.kafka.clients.producer.ProducerRecord;
 
 import java.util.TimerTask;
 
@@ -16,6 +15,6 @@ public class NotifyGameStarted extends TimerTask {
 
     @Override
     public void run() {
-        game.getProducer().send(new ProducerRecord<>(KafkaTopic.PLAYER_GAME_UPDATES, "game_stared"));
+        game.send(KafkaTopic.PLAYER_GAME_UPDATES, "game_stared");
     }
 }
@@ -1,45 +1,105 @@
 package me.nemo_64.sdp.engine.game.tasks;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import me.nemo_64.sdp.engine.game.Game;
+import me.nemo_64.sdp.engine.game.GameCheckpoint;
+import me.nemo_64.sdp.engine.game.GameFrame;
+import me.nemo_64.sdp.engine.util.ConfigurationEntry;
+import me.nemo_64.sdp.utilities.configuration.Config;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.TimerTask;
 
+// Writes a checkpoint of the game. Everything that happens after it is in the journal of the game, so the file is
+// only rewritten every checkpoint period. It is written next to the old one and moved over it, so a crash while
+// saving leaves the previous checkpoint in place. The API only reads JSON checkpoints, the binary ones are smaller
+// and faster to recover from but the games saved with them are not shown by the API once they stop running
 public class SaveGameStateTask extends TimerTask {
 
-    public static final Path GAME_STATE_FILE = Path.of("latestGame.json").toAbsolutePath();
+    public static final Path GAMES_FOLDER = Path.of("games").toAbsolutePath();
+    public static final Path LEGACY_GAME_STATE_FILE = Path.of("latestGame.json").toAbsolutePath();
+    public static final String JSON_FORMAT = "json";
+    public static final String BINARY_FORMAT = "binary";
+    public static final String BINARY_EXTENSION = ".checkpoint";
 
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int JSON_BUFFER_SIZE = 1 << 16;
+
+    public static boolean isValidFormat(String format) {
+        return JSON_FORMAT.equals(format) || BINARY_FORMAT.equals(format);
+    }
+
+    public static Path stateFileOf(String gameId) {
+        return GAMES_FOLDER.resolve(gameId + ".json");
+    }
+
+    public static Path binaryStateFileOf(String gameId) {
+        return GAMES_FOLDER.resolve(gameId + BINARY_EXTENSION);
+    }
 
     private final Game game;
+    private final GameFrame frame;
+    private final boolean binary;
+    private final boolean pretty;
 
-    public SaveGameStateTask(Game game) {
+    public SaveGameStateTask(Game game, GameFrame frame) {
         this.game = game;
-        game.getLogger().info("Using " + GAME_STATE_FILE.toAbsolutePath() + " as game file.");
+        this.frame = frame;
+        this.binary = BINARY_FORMAT.equals(
+                Config.getOptionalString(ConfigurationEntry.CHECKPOINT_FORMAT).orElse(JSON_FORMAT));
+        this.pretty = Config.getOptionalBoolean(ConfigurationEntry.PRETTY_CHECKPOINTS).orElse(false);
     }
 
     @Override
     public void run() {
+        boolean saved = false;
+        Path file = binary ? binaryStateFileOf(game.getId()) : stateFileOf(game.getId());
+        // The checkpoint in the other format is removed once this one is saved, so recovery finds only one
+        Path other = binary ? stateFileOf(game.getId()) : binaryStateFileOf(game.getId());
         try {
             long start = System.currentTimeMillis();
-            JsonObject json = game.asJson();
-            if (!Files.exists(GAME_STATE_FILE)) {
-                Path parent = GAME_STATE_FILE.getParent();
-                if (!Files.exists(parent))
-                    Files.createDirectories(parent);
-                Files.createFile(GAME_STATE_FILE);
+            Files.createDirectories(file.getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            if (binary)
+                Files.write(temporary, GameCheckpoint.encode(game, frame));
+            else
+                writeJson(temporary);
+            synchronized (game) {
+                if (game.isFinished()) {
+                    Files.deleteIfExists(temporary);
+                    return;
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(other);
             }
-            Files.writeString(GAME_STATE_FILE, GSON.toJson(json));
+            saved = true;
             long end = System.currentTimeMillis();
-            game.getLogger().info("Game state saved on " + GAME_STATE_FILE + ". Took " + (end - start) + "ms to save.");
+            game.getLogger().fine("Checkpoint of tick " + frame.tick() + " saved on " + file + ". Took "
+                    + (end - start) + "ms to save.");
         } catch (IOException e) {
             System.out.println("IO while saving map: " + e.getMessage());
             game.getLogger().warning("Could not save map file: " + e.getMessage());
+        } finally {
+            game.checkpointSaved(frame, saved);
+        }
+    }
+
+    // The elements are written to the file as they are visited instead of building the whole document first
+    private void writeJson(Path temporary) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                JsonWriter out = new JsonWriter(new BufferedWriter(
+                        Channels.newWriter(channel, StandardCharsets.UTF_8), JSON_BUFFER_SIZE))) {
+            if (pretty)
+                out.setIndent("  ");
+            game.writeJson(out, frame);
         }
     }
 
@@ -1,65 +1,274 @@
 package me.nemo_64.sdp.engine.game.tasks;
 
 import me.nemo_64.sdp.engine.game.Game;
-import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.engine.game.GameFrame;
 import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+import me.nemo_64.sdp.engine.token.TokenTable;
+import me.nemo_64.sdp.engine.util.ConfigurationEntry;
 import me.nemo_64.sdp.utilities.KafkaTopic;
+import me.nemo_64.sdp.utilities.configuration.Config;
 import me.nemo_64.sdp.utilities.data.City;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import me.nemo_64.sdp.utilities.map.MapCompression;
+import me.nemo_64.sdp.utilities.map.MapMessage;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.Collection;
 import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
+// Sends a keyframe with the whole map every keyframe interval and, in between, deltas with the cells and entities
+// that changed since the previous message. Messages only carry what is on the map, the readers draw it. Keyframes
+// only carry the cells with something on them, and deltas only compare the chunks whose snapshot changed since the
+// last frame sent, so nothing the size of the map is kept. The message and the bookkeeping of what was sent are kept
+// between messages, so building a message barely allocates.
+// Nothing is sent while the version of the world does not move. Once the map was idle for the max idle time a
+// keyframe is sent as a heartbeat, so readers that joined late get the map, and is sent again every max idle time
+// until the world changes
 public class SendGameMapTask extends TimerTask {
 
     private final Game game;
+    private final int keyframeInterval;
+    private final long maxIdle;
+    private final MapMessage.Writer message = new MapMessage.Writer(1024);
+    private final MapCompression compression;
+    private final MapBoard.CellListener cellWriter = this::writeCell;
+    private final MapBoard.CellListener keyframeCellWriter = this::writeKeyframeCell;
+    // What the readers have, as of the last message. Entities are kept by the slot of their token, the name of a
+    // slot is null while it has no entity. The arrays grow up to the highest slot seen, not to every slot a token
+    // can have
+    private byte[][] sentNames = new byte[64][];
+    private int[] sentTokens = new int[64];
+    private int[] sentLevels = new int[64];
+    private long[] seenOn = new long[64];
+    private int[] sentSlots = new int[64];
+    private int[] sentTokenList = new int[64];
+    private int sentCount = 0;
+    private int[] currentSlots = new int[64];
+    private int[] currentTokens = new int[64];
+    private int currentCount = 0;
+    private City[] sentCities = new City[0];
+    private byte[][] cityNames = new byte[0][];
+    private GameFrame sentFrame;
+    private long sentAt;
+    private String heartbeat;
+    // Set by the producer when a message could not be sent, the readers lost it so the next message is a keyframe
+    private volatile boolean sendFailed = false;
+    private long sequence = 0;
+    private int sinceKeyframe = 0;
+    private int changedCells;
+    private int lastCell;
+    private boolean closed = false;
 
     public SendGameMapTask(Game game) {
         this.game = game;
+        this.keyframeInterval = Config.getOptionalInt(ConfigurationEntry.MAP_KEYFRAME_INTERVAL).orElse(60);
+        this.maxIdle = TimeUnit.MILLISECONDS.toNanos(
+                Config.getOptionalInt(ConfigurationEntry.MAP_MAX_IDLE).orElse(1000));
+        this.compression = MapCompression.of(
+                Config.getOptionalString(ConfigurationEntry.MAP_COMPRESSION).orElse(MapCompression.DEFLATE),
+                Config.getOptionalInt(ConfigurationEntry.MAP_COMPRESSION_LEVEL).orElse(1));
     }
 
     @Override
-    public void run() {
-        ProducerRecord<String, String> mapRecord = new ProducerRecord<>(KafkaTopic.MAP, serializeMap());
-        game.getProducer().send(mapRecord, (data, ex) -> {
+    public synchronized void run() {
+        if (closed)
+            return;
+        GameFrame frame = game.getFrame();
+        long now = System.nanoTime();
+        String payload;
+        boolean resync = sendFailed;
+        if (resync)
+            sendFailed = false;
+        if (sentFrame == null || resync || frame.version() != sentFrame.version()) {
+            payload = encrypt(nextMessage(frame, resync));
+            heartbeat = null;
+        } else if (now - sentAt >= maxIdle) {
+            // The keyframe is only built once, later heartbeats of the same idle period send it again
+            if (heartbeat == null)
+                heartbeat = encrypt(nextMessage(frame, true));
+            payload = heartbeat;
+        } else {
+            return;
+        }
+        sentAt = now;
+        game.send(KafkaTopic.MAP, payload, (data, ex) -> {
             if (ex != null) {
-                game.getLogger().warning("Could not send map update:" + ex.getMessage());
-                ex.printStackTrace();
-                System.exit(-1);
+                game.getLogger().warning("Could not send map update, the next one is a keyframe: " + ex.getMessage());
+                sendFailed = true;
             } else {
                 // game.getLogger().info("Sent map update");
             }
         });
-        // game.getProducer().flush();
     }
 
-    private String serializeMap() {
-        String map = "    1  2  3  4  5  6  7  8  9  10 11 12 13 14 15 16 17 18 19 20\n";
-        for (int row = 0; row < 20; row++) {
-            String rowNumber = String.valueOf(row + 1);
-            if (rowNumber.length() == 1) {
-                rowNumber = " " + rowNumber + " ";
-            } else {
-                rowNumber = rowNumber + " ";
-            }
-            map += rowNumber;
-            for (int column = 0; column < 20; column++) {
-                List<GameElement> elements = game.getElementsAt(new Position(column, row));
-                map += elements.isEmpty() ? "   " : elements.get(0).mapRepresentation();
+    // Nothing is sent once closed
+    public synchronized void close() {
+        closed = true;
+        compression.close();
+    }
+
+    private String encrypt(MapMessage.Writer message) {
+        MapMessage.Writer compressed = compression.compress(message.bytes(), 0, message.length());
+        byte[] encrypted = game.getSymmetricCipher().encrypt(compressed.bytes(), 0, compressed.length());
+        return Base64.getEncoder().encodeToString(encrypted);
+    }
+
+    private MapMessage.Writer nextMessage(GameFrame frame, boolean forceKeyframe) {
+        boolean citiesChanged = updateCities(game.getCities());
+        message.reset();
+        if (sentFrame == null || forceKeyframe || ++sinceKeyframe >= keyframeInterval) {
+            keyframe(frame);
+            sinceKeyframe = 0;
+        } else {
+            delta(frame, citiesChanged);
+        }
+        sentFrame = frame;
+        sequence++;
+        return message;
+    }
+
+    private void keyframe(GameFrame frame) {
+        message.putByte(MapMessage.VERSION).putByte(MapMessage.KEYFRAME).putLong(sequence);
+        message.putInt(game.getWidth()).putInt(game.getHeight());
+        int count = message.length();
+        message.putInt(0);
+        changedCells = 0;
+        lastCell = -1;
+        MapBoard.drawAll(frame, keyframeCellWriter);
+        message.setInt(count, changedCells);
+        writeCities();
+        count = message.length();
+        message.putInt(0);
+        message.setInt(count, writeEntities(frame, true));
+        // Every entity that was sent before and is not on this frame is forgotten
+        writeRemoved(false);
+    }
+
+    private void delta(GameFrame frame, boolean citiesChanged) {
+        message.putByte(MapMessage.VERSION).putByte(MapMessage.DELTA).putLong(sequence);
+        int count = message.length();
+        message.putInt(0);
+        changedCells = 0;
+        for (int chunk = 0; chunk < frame.chunkCount(); chunk++)
+            if (!frame.sameChunk(chunk, sentFrame))
+                MapBoard.drawChunk(frame, sentFrame, chunk, cellWriter);
+        message.setInt(count, changedCells);
+        count = message.length();
+        message.putInt(0);
+        message.setInt(count, writeEntities(frame, false));
+        writeRemoved(true);
+        if (citiesChanged)
+            writeCities();
+        else
+            message.putInt(0);
+    }
+
+    private void writeCell(int x, int y, byte kind, int token) {
+        message.putInt(x).putInt(y).putByte(kind).putInt(token);
+        changedCells++;
+    }
+
+    // Empty cells are skipped, each cell says how many there were since the previous one
+    private void writeKeyframeCell(int x, int y, byte kind, int token) {
+        int cell = y * game.getWidth() + x;
+        message.putInt(cell - lastCell - 1).putByte(kind);
+        if (MapMessage.isMovable(kind))
+            message.putInt(token);
+        lastCell = cell;
+        changedCells++;
+    }
+
+    // Writes the entities of the frame, all of them or only the ones that changed, and returns how many
+    private int writeEntities(GameFrame frame, boolean all) {
+        List<GameElement.MovableGameElement> movables = frame.movables();
+        if (currentSlots.length < movables.size()) {
+            currentSlots = new int[Math.max(movables.size(), currentSlots.length * 2)];
+            currentTokens = new int[currentSlots.length];
+        }
+        int written = 0;
+        for (int i = 0; i < movables.size(); i++) {
+            GameElement.MovableGameElement movable = movables.get(i);
+            int token = movable.token();
+            int slot = TokenTable.slotOf(token);
+            if (slot >= sentTokens.length)
+                growSlots(slot);
+            int level = movable.getLevel();
+            // The name of an entity does not change while it keeps its token
+            boolean changed = sentNames[slot] == null || sentTokens[slot] != token;
+            if (changed)
+                sentNames[slot] = nameOf(movable).getBytes(StandardCharsets.UTF_8);
+            changed |= sentLevels[slot] != level;
+            currentSlots[i] = slot;
+            currentTokens[i] = token;
+            seenOn[slot] = sequence + 1;
+            sentTokens[slot] = token;
+            sentLevels[slot] = level;
+            if (all || changed) {
+                message.putInt(token).putByte(movable.mapKind()).putInt(level).putString(sentNames[slot]);
+                written++;
             }
-            map += "\n";
         }
-        City[] cities = game.getCities();
-        for (City city : cities)
-            map += city.prettyPrint() + "\n";
-        Collection<GameElement.MovableGameElement> movables = game.getMovableElements();
-        for (var movable : movables)
-            map += movable.display() + "\n";
-        byte[] encrypted = game.getSymmetricCipher().encrypt(map.getBytes(StandardCharsets.UTF_8));
-        return new String(Base64.getEncoder().encode(encrypted), StandardCharsets.UTF_8);
+        currentCount = movables.size();
+        return written;
+    }
+
+    private void growSlots(int slot) {
+        int length = Math.min(Math.max(slot + 1, sentTokens.length * 2), TokenTable.CAPACITY);
+        sentNames = Arrays.copyOf(sentNames, length);
+        sentTokens = Arrays.copyOf(sentTokens, length);
+        sentLevels = Arrays.copyOf(sentLevels, length);
+        seenOn = Arrays.copyOf(seenOn, length);
+    }
+
+    // The entities of the previous message that are not on this one, either gone or replaced by another entity with
+    // the same slot. The readers are only told on a delta, as a keyframe already replaces every entity they had
+    private void writeRemoved(boolean send) {
+        int count = message.length();
+        if (send)
+            message.putInt(0);
+        int removed = 0;
+        for (int i = 0; i < sentCount; i++) {
+            int slot = sentSlots[i];
+            if (seenOn[slot] == sequence + 1 && sentTokens[slot] == sentTokenList[i])
+                continue;
+            if (seenOn[slot] != sequence + 1)
+                sentNames[slot] = null;
+            if (send)
+                message.putInt(sentTokenList[i]);
+            removed++;
+        }
+        if (send)
+            message.setInt(count, removed);
+        int[] slots = sentSlots;
+        int[] tokens = sentTokenList;
+        sentSlots = currentSlots;
+        sentTokenList = currentTokens;
+        sentCount = currentCount;
+        currentSlots = slots;
+        currentTokens = tokens;
+    }
+
+    private boolean updateCities(City[] cities) {
+        if (Arrays.equals(cities, sentCities))
+            return false;
+        sentCities = cities.clone();
+        cityNames = new byte[cities.length][];
+        for (int i = 0; i < cities.length; i++)
+            cityNames[i] = cities[i].name().getBytes(StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private void writeCities() {
+        message.putInt(cityNames.length);
+        for (int i = 0; i < cityNames.length; i++)
+            message.putString(cityNames[i]).putDouble(sentCities[i].temperature());
+    }
+
+    private static String nameOf(GameElement.MovableGameElement movable) {
+        return movable instanceof PlayerGameElement player ? player.getPlayer().getAlias() : "";
     }
 
 }
@@ -0,0 +1,119 @@
+package me.nemo_64.sdp.engine.game.tasks;
+
+import me.nemo_64.sdp.engine.game.Game;
+import me.nemo_64.sdp.engine.game.GameFrame;
+import me.nemo_64.sdp.engine.game.GameStats;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.GameElementType;
+import me.nemo_64.sdp.engine.game.element.GameElementTypes;
+import me.nemo_64.sdp.engine.game.element.PlayerGameElement;
+import me.nemo_64.sdp.utilities.snapshot.SnapshotLayout;
+import me.nemo_64.sdp.utilities.snapshot.SnapshotWriter;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.TimerTask;
+
+// Copies the latest frame of the game to its memory mapped snapshot, which the API reads without going through
+// the checkpoint file. Nothing is written while the version of the world does not move, and only the chunks that
+// changed since the last snapshot are written again
+public class WriteSnapshotTask extends TimerTask {
+
+    public static Path snapshotFileOf(String gameId) {
+        return SaveGameStateTask.GAMES_FOLDER.resolve(gameId + SnapshotLayout.EXTENSION);
+    }
+
+    private final Game game;
+    private final Optional<SnapshotWriter> writer;
+    // The last frame written and the slots each of its chunks has on the snapshot
+    private GameFrame written;
+    private int[] chunkStart = new int[0];
+    private int[] chunkRoom = new int[0];
+    private int[] chunkUsed = new int[0];
+    private int slots;
+    private boolean closed = false;
+
+    public WriteSnapshotTask(Game game) {
+        this.game = game;
+        this.writer = SnapshotWriter.open(snapshotFileOf(game.getId()), game.getLogger());
+    }
+
+    @Override
+    public synchronized void run() {
+        GameFrame frame = game.getFrame();
+        if (closed || writer.isEmpty() || (written != null && frame.version() == written.version()))
+            return;
+        SnapshotWriter snapshot = writer.get();
+        boolean layout = written == null || !fits(frame);
+        if (layout)
+            layout(frame);
+        if (!snapshot.begin(slots))
+            return;
+        snapshot.header(frame.tick(), game.getWidth(), game.getHeight(), game.getCities());
+        for (int chunk = 0; chunk < frame.chunkCount(); chunk++) {
+            if (!layout && frame.sameChunk(chunk, written))
+                continue;
+            int count = frame.chunkElementCount(chunk);
+            int first = chunkStart[chunk];
+            for (int i = 0; i < count; i++)
+                writeElement(snapshot, first + i, frame.chunkElement(chunk, i));
+            // After a layout every slot of the chunk may hold an element of the old layout
+            int used = layout ? chunkRoom[chunk] : chunkUsed[chunk];
+            for (int i = count; i < used; i++)
+                snapshot.clear(first + i);
+            chunkUsed[chunk] = count;
+        }
+        GameStats stats = game.getStats();
+        snapshot.end(stats.getPlayers(), stats.getNpcs(), stats.getFood(), stats.getMines());
+        written = frame;
+    }
+
+    private boolean fits(GameFrame frame) {
+        for (int chunk = 0; chunk < frame.chunkCount(); chunk++)
+            if (frame.chunkElementCount(chunk) > chunkRoom[chunk])
+                return false;
+        return true;
+    }
+
+    // Every chunk gets its own slots, with room to spare so elements moving between chunks do not move the slots
+    // of the rest of the map
+    private void layout(GameFrame frame) {
+        if (chunkStart.length != frame.chunkCount()) {
+            chunkStart = new int[frame.chunkCount()];
+            chunkRoom = new int[frame.chunkCount()];
+            chunkUsed = new int[frame.chunkCount()];
+        }
+        int slot = 0;
+        for (int chunk = 0; chunk < frame.chunkCount(); chunk++) {
+            int count = frame.chunkElementCount(chunk);
+            chunkStart[chunk] = slot;
+            chunkRoom[chunk] = count == 0 ? 0 : count + Math.max(2, count / 4);
+            slot += chunkRoom[chunk];
+        }
+        // Slots of the old layout past the new one are not read, the snapshot says how many slots it has
+        slots = slot;
+    }
+
+    private static void writeElement(SnapshotWriter snapshot, int slot, GameElement element) {
+        int x = element.getPosition().x();
+        int y = element.getPosition().y();
+        // Types without a snapshot code are written as empty slots, which readers skip
+        byte code = GameElementTypes.typeOf(element).map(GameElementType::snapshotCode).orElse((byte) 0);
+        int level = 0;
+        int token = 0;
+        if (element instanceof GameElement.MovableGameElement movable) {
+            level = movable.getRawLevel();
+            token = movable.token();
+        }
+        if (element instanceof PlayerGameElement player)
+            snapshot.element(slot, code, x, y, level, token, player.getPlayer().getId(), player.getPlayer().getAlias());
+        else
+            snapshot.element(slot, code, x, y, level, token, null, null);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        writer.ifPresent(SnapshotWriter::close);
+    }
+
+}
@@ -15,6 +15,8 @@ public interface GameTokenCreationRequester {
 
     Password password();
 
+    String gameId();
+
     interface Password {
         String serialize();
 
@@ -14,7 +14,6 @@ import java.net.SocketTimeoutException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,6 +22,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.ToIntFunction;
 import java.util.logging.Logger;
 
@@ -45,14 +45,13 @@ public class TokenService {
             PlayerManager playerManager) {
         try {
             ServerSocket server = new ServerSocket(port);
-            Random r = new Random();
             return Result.ok(new TokenService(Executors.newSingleThreadExecutor(),
                     server,
                     playerManager,
                     timeOut,
                     (s) -> s.getInetAddress().getHostAddress() + ":" + s.getPort(),
                     (socket) -> attempts,
-                    (uuid) -> String.valueOf(r.nextInt())));
+                    (slot) -> String.valueOf(TokenTable.newToken(slot))));
         } catch (IOException e) {
             return Result.err(TokenServiceCreationError.COULD_NOT_CREATE_SERVER);
         }
@@ -68,11 +67,11 @@ public class TokenService {
     private Thread listeningThread;
     private final AtomicReference<Optional<GameTokenCreationRequest>> actualRequest = new AtomicReference<>(
             Optional.empty());
-    private final Function<UUID, String> tokenGenerator;
+    private final IntFunction<String> tokenGenerator;
 
     public TokenService(ExecutorService clientHandlers, ServerSocket server, PlayerManager playerManager, int timeOut,
             Function<Socket, String> addressFormatter, ToIntFunction<Socket> socketAttemptsGenerator,
-            Function<UUID, String> tokenGenerator) {
+            IntFunction<String> tokenGenerator) {
         this.clientHandlers = clientHandlers;
         this.server = server;
         this.playerManager = playerManager;
@@ -157,7 +156,8 @@ public class TokenService {
             Optional<String> token = request.createToken(player.get().getId());
             if (token.isEmpty())
                 LOGGER.warning("Tried to create a token for a non existing player. This should not have happened");
-            session.sendString(token.map((t) -> request.password + ":" + t).orElse(UNKNOWN_USER_CODE));
+            session.sendString(
+                    token.map((t) -> request.password + ":" + t + ":" + request.gameId).orElse(UNKNOWN_USER_CODE));
             session.endSession();
         });
     }
@@ -181,8 +181,8 @@ public class TokenService {
             return Optional.empty();
         }
         LOGGER.info("A request to create " + amount + " tokens was made");
-        actualRequest
-                .set(Optional.of(new GameTokenCreationRequest(requester.password().serialize(), amount, requester)));
+        actualRequest.set(Optional.of(new GameTokenCreationRequest(requester.password().serialize(),
+                requester.gameId(), amount, requester)));
         return actualRequest.get();
     }
 
@@ -208,19 +208,23 @@ public class TokenService {
     public class GameTokenCreationRequest {
 
         private final String password;
+        private final String gameId;
         private final int tokensToCreate;
         private final GameTokenCreationRequester requester;
         private final Map<String, LoadedPlayer> tokens = new ConcurrentHashMap<>();
         private final CompletableFuture<Map<String, LoadedPlayer>> future = new CompletableFuture<>();
 
-        public GameTokenCreationRequest(String password, int tokensToCreate, GameTokenCreationRequester requester) {
+        public GameTokenCreationRequest(String password, String gameId, int tokensToCreate,
+                GameTokenCreationRequester requester) {
             this.password = password;
+            this.gameId = gameId;
             this.tokensToCreate = tokensToCreate;
             this.requester = requester;
         }
 
+        // Players get the first slots of the game's token table, in the order they join
         public Optional<String> createToken(UUID uuid) {
-            String token = tokenGenerator.apply(uuid);
+            String token = tokenGenerator.apply(tokens.size());
             Optional<LoadedPlayer> player = TokenService.this.playerManager.getPlayer(uuid);
             if (player.isEmpty())
                 return Optional.empty();
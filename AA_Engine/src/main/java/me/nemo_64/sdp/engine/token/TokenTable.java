@@ -0,0 +1,81 @@
+package me.nemo_64.sdp.engine.token;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+
+// Elements indexed by the low bits of their token. The high bits are random, so tokens can't be guessed from the
+// slots in use, and they are checked on every lookup so a stale token never reaches the new owner of its slot
+public class TokenTable<T> {
+
+    public static final int SLOT_BITS = 16;
+    public static final int CAPACITY = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = CAPACITY - 1;
+    private static final Random RANDOM = new Random();
+
+    public static int newToken(int slot) {
+        return (RANDOM.nextInt() << SLOT_BITS) | (slot & SLOT_MASK);
+    }
+
+    public static int slotOf(int token) {
+        return token & SLOT_MASK;
+    }
+
+    private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicInteger limit = new AtomicInteger();
+    private final ToIntFunction<T> tokenOf;
+    private int nextFree = 0;
+
+    public TokenTable(ToIntFunction<T> tokenOf) {
+        this.tokenOf = tokenOf;
+    }
+
+    public T get(int token) {
+        T element = slots.get(slotOf(token));
+        return element != null && tokenOf.applyAsInt(element) == token ? element : null;
+    }
+
+    public boolean contains(int token) {
+        return get(token) != null;
+    }
+
+    public boolean put(T element) {
+        int slot = slotOf(tokenOf.applyAsInt(element));
+        if (!slots.compareAndSet(slot, null, element))
+            return false;
+        limit.accumulateAndGet(slot + 1, Math::max);
+        return true;
+    }
+
+    public boolean remove(T element) {
+        return slots.compareAndSet(slotOf(tokenOf.applyAsInt(element)), element, null);
+    }
+
+    // A token whose slot is free right now. Only meant for the thread that puts elements in the table
+    public OptionalInt freeToken() {
+        for (int i = 0; i < CAPACITY; i++) {
+            int slot = (nextFree + i) & SLOT_MASK;
+            if (slots.get(slot) == null) {
+                nextFree = slot + 1;
+                return OptionalInt.of(newToken(slot));
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    public List<T> values() {
+        List<T> values = new ArrayList<>();
+        int end = limit.get();
+        for (int slot = 0; slot < end; slot++) {
+            T element = slots.get(slot);
+            if (element != null)
+                values.add(element);
+        }
+        return values;
+    }
+
+}
@@ -16,7 +16,22 @@ public final class ConfigurationEntry {
     public static final String WEATHER_REQUEST_HTTP_VERSION = "weather-request-http-version";
     public static final String WEATHER_REQUEST_URI = "weather-request-uri";
     public static final String WEATHER_REQUEST_TOKEN = "weather-request-token";
-    public static final String SAVE_MAP_PERIOD = "save-map-period";
+    public static final String CHECKPOINT_PERIOD = "checkpoint-period";
+    public static final String CHECKPOINT_FORMAT = "checkpoint-format";
+    public static final String PRETTY_CHECKPOINTS = "pretty-checkpoints";
+    public static final String SNAPSHOT_PERIOD = "snapshot-period";
+    public static final String MAP_KEYFRAME_INTERVAL = "map-keyframe-interval";
+    public static final String MAP_MAX_IDLE = "map-max-idle";
+    public static final String MAP_COMPRESSION = "map-compression";
+    public static final String MAP_COMPRESSION_LEVEL = "map-compression-level";
     public static final String KAFKA_ENCRYPTION_ALGORITHM = "kafka-encryption-algorithm";
+    public static final String WORLD_WIDTH = "world-width";
+    public static final String WORLD_HEIGHT = "world-height";
+    public static final String MAP_SEED = "map-seed";
+    public static final String TICK_PERIOD = "tick-period";
+    public static final String MAX_GAMES = "max-games";
+    public static final String GAME_WORKERS = "game-workers";
+    public static final String CONSUMER_THREADS = "consumer-threads";
+    public static final String REGION_WORKERS = "region-workers";
 
 }
@@ -0,0 +1,74 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.token.TokenTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestEntityStore {
+
+    @Test
+    public void testPagesAreCreatedWhenSlotsAreAttached() {
+        EntityStore store = new EntityStore();
+        Assertions.assertEquals(0, store.pageCount());
+        int first = store.attach(TokenTable.newToken(3), 2, 10, true, false);
+        Assertions.assertEquals(1, store.pageCount());
+        int last = store.attach(TokenTable.newToken(TokenTable.CAPACITY - 1), 7, 20, true, true);
+        Assertions.assertEquals(2, store.pageCount());
+        store.attach(TokenTable.newToken(4), 1, 0, true, false);
+        Assertions.assertEquals(2, store.pageCount());
+        Assertions.assertEquals(2, store.level(first));
+        Assertions.assertEquals(10, store.lastMovement(first));
+        Assertions.assertFalse(store.isDisconnected(first));
+        Assertions.assertEquals(7, store.level(last));
+        Assertions.assertEquals(20, store.lastMovement(last));
+        Assertions.assertTrue(store.isDisconnected(last));
+    }
+
+    @Test
+    public void testTouchIgnoresTokensThatWereNeverAttached() {
+        EntityStore store = new EntityStore();
+        int token = TokenTable.newToken(5);
+        int slot = store.attach(token, 1, 0, true, false);
+        store.touch(token, 50);
+        store.touch(token ^ (1 << TokenTable.SLOT_BITS), 60);
+        store.touch(TokenTable.newToken(EntityStore.PAGE_SIZE * 3), 70);
+        Assertions.assertEquals(50, store.lastMovement(slot));
+        Assertions.assertEquals(1, store.pageCount());
+    }
+
+    @Test
+    public void testSweepDisconnected() {
+        EntityStore store = new EntityStore();
+        int idle = TokenTable.newToken(1);
+        int moving = TokenTable.newToken(EntityStore.PAGE_SIZE + 2);
+        int back = TokenTable.newToken(EntityStore.PAGE_SIZE * 5);
+        int dead = TokenTable.newToken(9);
+        store.attach(idle, 1, 100, true, false);
+        store.attach(moving, 1, 500, true, false);
+        store.attach(back, 1, 600, true, true);
+        store.detach(store.attach(dead, 1, 0, true, false));
+
+        List<Integer> disconnected = new ArrayList<>();
+        List<Integer> reconnected = new ArrayList<>();
+        store.sweepDisconnected(300, disconnected::add, reconnected::add);
+        Assertions.assertEquals(List.of(idle), disconnected);
+        Assertions.assertEquals(List.of(back), reconnected);
+        Assertions.assertTrue(store.isDisconnected(TokenTable.slotOf(idle)));
+        Assertions.assertFalse(store.isDisconnected(TokenTable.slotOf(back)));
+
+        // Nothing changed, so nothing is passed again
+        disconnected.clear();
+        reconnected.clear();
+        store.sweepDisconnected(300, disconnected::add, reconnected::add);
+        Assertions.assertTrue(disconnected.isEmpty());
+        Assertions.assertTrue(reconnected.isEmpty());
+
+        store.touch(idle, 400);
+        store.sweepDisconnected(300, disconnected::add, reconnected::add);
+        Assertions.assertEquals(List.of(idle), reconnected);
+    }
+
+}
@@ -0,0 +1,37 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.utilities.data.City;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestGameClimate {
+
+    private static final City[] CITIES = { new City("Cold", 5), new City("Mild", 20), new City("Hot", 30),
+            new City("Warm", 24) };
+
+    @Test
+    public void testZonesFollowTheQuadrantsOfTheCities() {
+        // Odd sizes, so the middle column and row must fall on the same side as on Game.getCity
+        for (int[] size : new int[][] { { 7, 9 }, { 8, 8 }, { 1, 1 } }) {
+            GameClimate climate = new GameClimate(size[0], size[1], CITIES);
+            for (int y = 0; y < size[1]; y++) {
+                for (int x = 0; x < size[0]; x++) {
+                    City city = CITIES[x * 2 / size[0] + y * 2 / size[1] * 2];
+                    Assertions.assertEquals(GameClimate.zoneOf(city.temperature()), climate.zoneAt(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testZonesChangeWithTheCities() {
+        GameClimate climate = new GameClimate(10, 10, CITIES);
+        Assertions.assertEquals(GameClimate.COLD, climate.zoneAt(0, 0));
+        City[] cities = CITIES.clone();
+        cities[0] = new City("Cold", 40);
+        climate.update(cities);
+        Assertions.assertEquals(GameClimate.HOT, climate.zoneAt(0, 0));
+        Assertions.assertEquals(GameClimate.MILD, climate.zoneAt(-1, 0));
+    }
+
+}
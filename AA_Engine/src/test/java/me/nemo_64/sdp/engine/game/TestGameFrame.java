@@ -0,0 +1,58 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import me.nemo_64.sdp.engine.game.generator.RandomMapGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+public class TestGameFrame {
+
+    @Test
+    public void testChunkOfHoldsTheCell() {
+        GameGrid grid = new GameGrid(70, 45);
+        GameFrame frame = GameFrame.capture(0, grid, null);
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                int chunk = frame.chunkOf(x, y);
+                Assertions.assertTrue(x >= frame.chunkX(chunk) && x < frame.chunkX(chunk) + frame.chunkSize());
+                Assertions.assertTrue(y >= frame.chunkY(chunk) && y < frame.chunkY(chunk) + frame.chunkSize());
+            }
+        }
+    }
+
+    @Test
+    public void testSpawnsOnlyOnFreeCells() {
+        // Every third cell is free, so both random cells and the fallback to counting the free cells are used
+        GameGrid grid = new GameGrid(40, 40);
+        Set<Position> free = new HashSet<>();
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                Position position = new Position(x, y);
+                if ((x + y) % 3 == 0)
+                    free.add(position);
+                else
+                    grid.add(grid.index(x, y), new MineGameElement(null, position));
+            }
+        }
+        GameFrame frame = GameFrame.capture(0, grid, null);
+        RandomMapGenerator generator = new RandomMapGenerator(99);
+        int count = free.size();
+        for (int i = 0; i < count; i++) {
+            Position position = generator.spawnPosition(frame, 40, 40).orElseThrow();
+            Assertions.assertTrue(free.remove(position), position + " is not free");
+            // As the game does, the next frames have the element that spawned
+            grid.add(grid.index(position.x(), position.y()), new MineGameElement(null, position));
+        }
+        Assertions.assertEquals(Optional.empty(), generator.spawnPosition(frame, 40, 40));
+        GameElement mine = grid.first(grid.index(1, 0));
+        Assertions.assertTrue(grid.remove(grid.index(1, 0), mine));
+        Assertions.assertEquals(Optional.of(new Position(1, 0)),
+                generator.spawnPosition(GameFrame.capture(1, grid, frame), 40, 40));
+    }
+
+}
@@ -0,0 +1,39 @@
+package me.nemo_64.sdp.engine.game;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestGameGrid {
+
+    @Test
+    public void testIndexRoundTrip() {
+        GameGrid grid = new GameGrid(45, 70);
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                int index = grid.index(x, y);
+                Assertions.assertEquals(x, grid.xOf(index));
+                Assertions.assertEquals(y, grid.yOf(index));
+            }
+        }
+    }
+
+    @Test
+    public void testPositionsAreInterned() {
+        GameGrid grid = new GameGrid(45, 70);
+        int index = grid.index(44, 69);
+        Position position = grid.positionAt(index);
+        Assertions.assertEquals(new Position(44, 69), position);
+        Assertions.assertSame(position, grid.positionAt(index));
+        Assertions.assertNotSame(position, grid.positionAt(grid.index(43, 69)));
+    }
+
+    @Test
+    public void testHugeGridsDoNotInternPositions() {
+        GameGrid grid = new GameGrid(GameGrid.MAX_SIZE, GameGrid.MAX_SIZE);
+        int index = grid.index(GameGrid.MAX_SIZE - 1, 3);
+        Position position = grid.positionAt(index);
+        Assertions.assertEquals(new Position(GameGrid.MAX_SIZE - 1, 3), position);
+        Assertions.assertNotSame(position, grid.positionAt(index));
+    }
+
+}
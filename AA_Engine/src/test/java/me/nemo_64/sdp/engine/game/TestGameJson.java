@@ -0,0 +1,56 @@
+package me.nemo_64.sdp.engine.game;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import me.nemo_64.sdp.engine.game.element.FoodGameElement;
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import me.nemo_64.sdp.engine.game.element.NPCGameElement;
+import me.nemo_64.sdp.utilities.data.City;
+import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+public class TestGameJson {
+
+    @Test
+    public void testWrittenGameLoadsTheSame() throws Exception {
+        GameHost host = new GameHost(null, null, null, 1, null, 1);
+        City[] cities = { new City("Alicante", 21), new City("Oslo", -3), new City("Cairo", 30), new City("Lima", 15) };
+        List<GameElement> elements = List.of(new FoodGameElement(null, new Position(1, 0)),
+                new MineGameElement(null, new Position(4, 2)), new NPCGameElement(null, new Position(3, 3), 2, 5),
+                new NPCGameElement(null, new Position(0, 7), 6, 9));
+        Game game = Game.create("test-json", elements, cities, 8, 8, host, SymmetricCipher.create("secret"))
+                .orElseThrow();
+
+        StringWriter written = new StringWriter();
+        try (JsonWriter out = new JsonWriter(written)) {
+            game.writeJson(out, game.getFrame());
+        } catch (IOException e) {
+            Assertions.fail(e);
+        }
+        Game loaded = GameCreator.fromJson(JsonParser.parseString(written.toString()).getAsJsonObject(), host)
+                .orElseThrow();
+
+        Assertions.assertEquals(game.getId(), loaded.getId());
+        Assertions.assertArrayEquals(game.getCities(), loaded.getCities());
+        Assertions.assertEquals(game.getStats().asJson(), loaded.getStats().asJson());
+        List<GameElement> expected = game.getFrame().elements();
+        List<GameElement> actual = loaded.getFrame().elements();
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+            Assertions.assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+            if (expected.get(i) instanceof GameElement.MovableGameElement movable) {
+                GameElement.MovableGameElement other = (GameElement.MovableGameElement) actual.get(i);
+                Assertions.assertEquals(movable.token(), other.token());
+                Assertions.assertEquals(movable.getRawLevel(), other.getRawLevel());
+            }
+        }
+    }
+
+}
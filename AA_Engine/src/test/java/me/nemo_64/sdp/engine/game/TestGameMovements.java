@@ -0,0 +1,74 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.NPCGameElement;
+import me.nemo_64.sdp.engine.game.generator.RandomMapGenerator;
+import me.nemo_64.sdp.engine.token.TokenTable;
+import me.nemo_64.sdp.utilities.KafkaMessage;
+import me.nemo_64.sdp.utilities.data.City;
+import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestGameMovements {
+
+    private static final City[] CITIES = { new City("a", 15), new City("b", 15), new City("c", 15),
+            new City("d", 15) };
+    // Index of the movement to the right in the direction table of the game
+    private static final int RIGHT = 4;
+
+    // One NPC per row, so they move to the right forever without meeting
+    private static Game game(List<GameElement> elements, int[] tokens) throws Exception {
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = TokenTable.newToken(i);
+            elements.add(new NPCGameElement(null, new Position(i, i), 1, tokens[i]));
+        }
+        return new Game("test-movements", elements, CITIES, 64, 64, null, SymmetricCipher.create("secret"),
+                new RandomMapGenerator(1));
+    }
+
+    @Test
+    public void testMovementsAreApplied() throws Exception {
+        List<GameElement> elements = new ArrayList<>();
+        int[] tokens = new int[2];
+        Game game = game(elements, tokens);
+        game.queueMovement(tokens[0], RIGHT);
+        game.queueMovement(tokens[0], RIGHT);
+        game.queueMovement(tokens[1], 0);
+        game.queueMovement(TokenTable.newToken(40), RIGHT);
+        game.step();
+        Assertions.assertEquals(new Position(2, 0), elements.get(0).getPosition());
+        Assertions.assertEquals(new Position(0, 0), elements.get(1).getPosition());
+    }
+
+    @Test
+    public void testMovingDoesNotAllocate() throws Exception {
+        Assertions.assertTrue(RIGHT < KafkaMessage.DIRECTION_COUNT);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Assertions.assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int npcs = 32;
+        int[] tokens = new int[npcs];
+        Game game = game(new ArrayList<>(), tokens);
+        // Lets the buffers reach their size and the movement path get compiled
+        for (int i = 0; i < 20_000; i++)
+            moveAll(game, tokens);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000; i++)
+            moveAll(game, tokens);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        Assertions.assertEquals(0, allocated, "Moving " + npcs * 1_000 + " times allocated " + allocated + " bytes");
+    }
+
+    private static void moveAll(Game game, int[] tokens) {
+        for (int token : tokens)
+            game.queueMovement(token, RIGHT);
+        game.step();
+    }
+
+}
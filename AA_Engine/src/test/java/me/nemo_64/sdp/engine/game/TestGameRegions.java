@@ -0,0 +1,42 @@
+package me.nemo_64.sdp.engine.game;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class TestGameRegions {
+
+    @Test
+    public void testEveryRegionRunsThePhase() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            GameRegions regions = new GameRegions(new GameGrid(64, 64), pool, 2);
+            Assertions.assertEquals(2, regions.count());
+            AtomicIntegerArray ran = new AtomicIntegerArray(regions.count());
+            regions.run(ran::incrementAndGet);
+            for (int region = 0; region < regions.count(); region++)
+                Assertions.assertEquals(1, ran.get(region));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInterruptedPhaseThrows() {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            GameRegions regions = new GameRegions(new GameGrid(64, 64), pool, 2);
+            Thread.currentThread().interrupt();
+            Assertions.assertThrows(CancellationException.class, () -> regions.run((region) -> {
+            }));
+            Assertions.assertTrue(Thread.interrupted());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package me.nemo_64.sdp.engine.game;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import me.nemo_64.sdp.engine.game.element.GameElementType;
+import me.nemo_64.sdp.engine.game.element.GameElementTypes;
+import me.nemo_64.sdp.engine.game.element.MineGameElement;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestGameStats {
+
+    private static class CraterGameElement extends MineGameElement {
+
+        CraterGameElement(Position position) {
+            super(null, position);
+        }
+
+    }
+
+    private static final GameElementType CRATER = GameElementTypes.register("test-crater", CraterGameElement.class,
+            (json) -> null, (byte) 0, (position, level, token, player) -> new CraterGameElement(position));
+
+    @AfterAll
+    public static void unregisterCrater() {
+        GameElementTypes.unregister(CRATER.code());
+    }
+
+    @Test
+    public void testRegisteredTypesAreCounted() {
+        GameStats stats = new GameStats();
+        GameElement crater = new CraterGameElement(new Position(1, 2));
+        Assertions.assertEquals(CRATER.kind(), crater.kind());
+        stats.added(crater);
+        stats.added(new MineGameElement(null, new Position(3, 4)));
+        Assertions.assertEquals(1, stats.count(CRATER.kind()));
+        Assertions.assertEquals(1, stats.getMines());
+        stats.removed(crater);
+        Assertions.assertEquals(0, stats.count(CRATER.kind()));
+    }
+
+    @Test
+    public void testRegisteredTypesAreFoundByKind() {
+        GameElementType type = GameElementTypes.typeOf(CRATER.kind()).orElseThrow();
+        Assertions.assertEquals("test-crater", type.code());
+        GameElement decoded = type.decoder().decode(new Position(5, 6), 0, 0, null);
+        Assertions.assertInstanceOf(CraterGameElement.class, decoded);
+        Assertions.assertEquals(new Position(5, 6), decoded.getPosition());
+        Assertions.assertTrue(GameElementTypes.typeOf((byte) 0).isEmpty());
+    }
+
+}
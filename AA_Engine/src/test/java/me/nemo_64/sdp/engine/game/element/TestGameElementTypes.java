@@ -0,0 +1,79 @@
+package me.nemo_64.sdp.engine.game.element;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestGameElementTypes {
+
+    private static class FreedGameElement extends MineGameElement {
+
+        FreedGameElement() {
+            super(null, null);
+        }
+
+    }
+
+    @Test
+    public void testBuiltInTypesHaveFixedKinds() {
+        Assertions.assertEquals(GameElementTypes.FOOD, GameElementTypes.kindOf(FoodGameElement.class));
+        Assertions.assertEquals(GameElementTypes.MINE, GameElementTypes.kindOf(MineGameElement.class));
+        Assertions.assertEquals(GameElementTypes.NPC, GameElementTypes.kindOf(NPCGameElement.class));
+        Assertions.assertEquals(GameElementTypes.PLAYER, GameElementTypes.kindOf(PlayerGameElement.class));
+        Assertions.assertEquals("mine", GameElementTypes.typeOf(GameElementTypes.MINE).orElseThrow().code());
+    }
+
+    @Test
+    public void testTakenKindsAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameElementTypes.register("test-taken",
+                MineGameElement.class, (json) -> null, GameElementTypes.MINE, (byte) 0, null));
+        Assertions.assertTrue(GameElementTypes.parserOf("test-taken").isEmpty());
+    }
+
+    @Test
+    public void testUnregisterFreesTheKind() {
+        GameElementType type = GameElementTypes.register("test-freed", FreedGameElement.class, (json) -> null,
+                (byte) 10, (byte) 0, null);
+        Assertions.assertEquals(type, GameElementTypes.typeOf((byte) 10).orElseThrow());
+        GameElementTypes.unregister("test-freed");
+        Assertions.assertTrue(GameElementTypes.typeOf((byte) 10).isEmpty());
+        Assertions.assertTrue(GameElementTypes.parserOf("test-freed").isEmpty());
+    }
+
+    private static class LateGameElement extends MineGameElement {
+
+        LateGameElement() {
+            super(null, null);
+        }
+
+    }
+
+    private static class UnknownGameElement extends GameElement.AbstractGameElement {
+
+        UnknownGameElement() {
+            super(null, null);
+        }
+
+        @Override
+        public String mapRepresentation() {
+            return " ? ";
+        }
+
+    }
+
+    @Test
+    public void testTypesCanNotBeRegisteredAfterTheirKindIsUsed() {
+        Assertions.assertEquals(GameElementTypes.MINE, new LateGameElement().kind());
+        Assertions.assertEquals(0, new UnknownGameElement().kind());
+        Assertions.assertThrows(IllegalStateException.class, () -> GameElementTypes.register("test-unknown",
+                UnknownGameElement.class, (json) -> null));
+        Assertions.assertTrue(GameElementTypes.parserOf("test-unknown").isEmpty());
+    }
+
+    @Test
+    public void testMissingParsersAreNotFound() {
+        Assertions.assertTrue(GameElementTypes.parserOf("me.nemo_64.sdp.engine.NoSuchElement").isEmpty());
+        Assertions.assertTrue(GameElementTypes.parserOf("me.nemo_64.sdp.engine.NoSuchElement").isEmpty());
+        Assertions.assertTrue(GameElementTypes.parserOf(String.class.getName()).isEmpty());
+    }
+
+}
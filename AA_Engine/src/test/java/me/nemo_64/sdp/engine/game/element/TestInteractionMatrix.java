@@ -0,0 +1,51 @@
+package me.nemo_64.sdp.engine.game.element;
+
+import me.nemo_64.sdp.engine.game.Position;
+import me.nemo_64.sdp.engine.game.element.GameElement.InteractionResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestInteractionMatrix {
+
+    private static final Position POSITION = new Position(1, 1);
+
+    @Test
+    public void testMineRemovesBoth() {
+        PlayerGameElement player = new PlayerGameElement(null, POSITION, null, 3, 1);
+        MineGameElement mine = new MineGameElement(null, POSITION);
+        Assertions.assertEquals(InteractionResult.REMOVE_BOTH, InteractionMatrix.resolve(player, mine));
+    }
+
+    @Test
+    public void testFoodLevelsUp() {
+        PlayerGameElement player = new PlayerGameElement(null, POSITION, null, 3, 1);
+        FoodGameElement food = new FoodGameElement(null, POSITION);
+        Assertions.assertEquals(InteractionResult.REMOVE_OTHER, InteractionMatrix.resolve(player, food));
+        Assertions.assertEquals(4, player.getRawLevel());
+    }
+
+    @Test
+    public void testHigherLevelWins() {
+        NPCGameElement strong = new NPCGameElement(null, POSITION, 5, 1);
+        NPCGameElement weak = new NPCGameElement(null, POSITION, 2, 2);
+        Assertions.assertEquals(InteractionResult.REMOVE_OTHER, InteractionMatrix.resolve(strong, weak));
+        Assertions.assertEquals(InteractionResult.REMOVE_SELF, InteractionMatrix.resolve(weak, strong));
+    }
+
+    @Test
+    public void testTieDoesNothing() {
+        NPCGameElement npc = new NPCGameElement(null, POSITION, 3, 1);
+        NPCGameElement other = new NPCGameElement(null, POSITION, 3, 2);
+        Assertions.assertEquals(InteractionResult.NOTHING, InteractionMatrix.resolve(npc, other));
+        Assertions.assertEquals(3, npc.getRawLevel());
+        Assertions.assertEquals(3, other.getRawLevel());
+    }
+
+    @Test
+    public void testNPCsIgnoreMines() {
+        NPCGameElement npc = new NPCGameElement(null, POSITION, 3, 1);
+        Assertions.assertEquals(InteractionResult.NOTHING,
+                InteractionMatrix.resolve(npc, new MineGameElement(null, POSITION)));
+    }
+
+}
@@ -0,0 +1,40 @@
+package me.nemo_64.sdp.engine.game.generator;
+
+import me.nemo_64.sdp.engine.game.element.GameElement;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class TestRandomMapGenerator {
+
+    @Test
+    public void testSeedGivesTheSameMapOnBothPaths() {
+        // Not a multiple of the chunk size, so the last chunks of every row and column are cut
+        List<GameElement> serial = new RandomMapGenerator(1234, Integer.MAX_VALUE).generate(300, 250, Map.of());
+        List<GameElement> parallel = new RandomMapGenerator(1234, 0).generate(300, 250, Map.of());
+        Assertions.assertFalse(serial.isEmpty());
+        Assertions.assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            Assertions.assertEquals(serial.get(i).getClass(), parallel.get(i).getClass());
+            Assertions.assertEquals(serial.get(i).getPosition(), parallel.get(i).getPosition());
+        }
+    }
+
+    @Test
+    public void testGamesGetDifferentSeeds() {
+        Assertions.assertEquals(RandomMapGenerator.seedOf(1234, "game-1"), RandomMapGenerator.seedOf(1234, "game-1"));
+        Assertions.assertNotEquals(RandomMapGenerator.seedOf(1234, "game-1"),
+                RandomMapGenerator.seedOf(1234, "game-2"));
+    }
+
+    @Test
+    public void testDifferentSeedsGiveDifferentMaps() {
+        List<GameElement> first = new RandomMapGenerator(1, Integer.MAX_VALUE).generate(64, 64, Map.of());
+        List<GameElement> second = new RandomMapGenerator(2, Integer.MAX_VALUE).generate(64, 64, Map.of());
+        Assertions.assertNotEquals(first.stream().map(GameElement::getPosition).toList(),
+                second.stream().map(GameElement::getPosition).toList());
+    }
+
+}
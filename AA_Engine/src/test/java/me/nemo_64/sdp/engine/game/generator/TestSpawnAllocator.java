@@ -0,0 +1,38 @@
+package me.nemo_64.sdp.engine.game.generator;
+
+import me.nemo_64.sdp.engine.game.Position;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+public class TestSpawnAllocator {
+
+    @Test
+    public void testNeverAllocatesOccupiedCells() {
+        int width = 37;
+        int height = 23;
+        SplittableRandom random = new SplittableRandom(42);
+        SpawnAllocator spawns = new SpawnAllocator(width, height);
+        Set<Position> taken = new HashSet<>();
+        for (int i = 0; i < width * height / 2; i++) {
+            Position position = new Position(random.nextInt(width), random.nextInt(height));
+            spawns.occupy(position.x(), position.y());
+            taken.add(position);
+        }
+        Assertions.assertEquals(width * height - taken.size(), spawns.freeCells());
+        int free = spawns.freeCells();
+        for (int i = 0; i < free; i++) {
+            Position position = spawns.allocate(random).orElseThrow();
+            Assertions.assertTrue(position.x() >= 0 && position.x() < width);
+            Assertions.assertTrue(position.y() >= 0 && position.y() < height);
+            Assertions.assertTrue(taken.add(position), position + " was already taken");
+        }
+        Assertions.assertEquals(0, spawns.freeCells());
+        Assertions.assertEquals(Optional.empty(), spawns.allocate(random));
+    }
+
+}
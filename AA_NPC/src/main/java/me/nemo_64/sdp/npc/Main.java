@@ -1,5 +1,6 @@
 package me.nemo_64.sdp.npc;
 
+import me.nemo_64.sdp.utilities.KafkaMessage;
 import me.nemo_64.sdp.utilities.KafkaTopic;
 import me.nemo_64.sdp.utilities.NumberUtil;
 import me.nemo_64.sdp.utilities.configuration.Config;
@@ -9,6 +10,8 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
@@ -18,6 +21,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.Random;
 import java.util.UUID;
@@ -33,13 +37,13 @@ public class Main {
 
     private static final Logger NPC_LOGGER = Logger.getLogger("AA_NPC");
     private static final ScheduledExecutorService EXECUTOR_SERVICE = Executors.newSingleThreadScheduledExecutor();
-    private static final String[] MOVEMENTS = { "NW", "N", "NE", "W", "E", "SW", "S", "SE" };
     private static final UUID ID = UUID.randomUUID();
 
-    private static KafkaProducer<String, String> producer;
-    private static KafkaConsumer<String, String> consumer;
+    private static KafkaProducer<String, byte[]> producer;
+    private static KafkaConsumer<String, byte[]> consumer;
     private static ScheduledFuture<?> keepAliveSender;
-    private static String token;
+    private static int token;
+    private static String gameId;
 
     static {
         // NPC_LOGGER.setUseParentHandlers(false);
@@ -58,18 +62,19 @@ public class Main {
     }
 
     private static void sendKeepAlive() {
-        producer.send(new ProducerRecord<>(KafkaTopic.MOVABLE_KEEP_ALIVE, token + ":" + System.currentTimeMillis()));
+        producer.send(new ProducerRecord<>(KafkaTopic.MOVABLE_KEEP_ALIVE, gameId,
+                KafkaMessage.keepAlive(token, System.currentTimeMillis())));
     }
 
     private static void run() {
         keepAliveSender = EXECUTOR_SERVICE.scheduleAtFixedRate(Main::sendKeepAlive, 0, 700, TimeUnit.MILLISECONDS);
         Random r = new Random();
-        String deathMessage = "die:" + token;
         long lastServerMessage = System.currentTimeMillis();
         while (true) {
             var records = consumer.poll(Duration.ofMillis(r.nextInt(500, 4500)));
-            if (records.count() > 0)
-                lastServerMessage = System.currentTimeMillis();
+            for (var message : records)
+                if (gameId.equals(message.key()))
+                    lastServerMessage = System.currentTimeMillis();
             if (lastServerMessage + 1000 < System.currentTimeMillis()) {
                 System.out.println("Is the server down?");
                 try {
@@ -79,26 +84,27 @@ public class Main {
                 continue;
             }
             for (var message : records) {
-                if (KafkaTopic.ENGINE_KEEP_ALIVE.equals(message.topic()))
+                if (!gameId.equals(message.key()) || KafkaTopic.ENGINE_KEEP_ALIVE.equals(message.topic()))
                     continue;
-                if (message.value().equals(deathMessage)) {
+                byte type = KafkaMessage.type(message.value());
+                if (type == KafkaMessage.NPC_DIE && KafkaMessage.token(message.value()) == token) {
                     System.out.println("DIED");
                     System.exit(0);
-                } else if (message.value().equals("game_ended")) {
+                } else if (type == KafkaMessage.GAME_ENDED) {
                     System.out.println("GAME FINISHED");
                     EXECUTOR_SERVICE.schedule(() -> System.exit(0), 5, TimeUnit.SECONDS);
                 }
             }
-            String movement = MOVEMENTS[r.nextInt(MOVEMENTS.length)];
-            System.out.println("MOVING " + movement);
-            producer.send(new ProducerRecord<>(KafkaTopic.MOVEMENT, token + ":" + movement));
+            byte direction = (byte) r.nextInt(KafkaMessage.DIRECTION_COUNT);
+            System.out.println("MOVING " + KafkaMessage.directionName(direction));
+            producer.send(new ProducerRecord<>(KafkaTopic.MOVEMENT, gameId, KafkaMessage.movement(token, direction)));
             producer.flush();
         }
     }
 
     public static void main(String[] args) {
-        if (args.length != 1 && args.length != 2) {
-            System.out.println("Invalid amount of arguments. Usage: AA_NPC <config> [token]");
+        if (args.length != 1 && args.length != 3) {
+            System.out.println("Invalid amount of arguments. Usage: AA_NPC <config> [token game]");
             System.exit(-1);
         }
         var configBuilder = ConfigurationBuilder.newBuilder()
@@ -106,7 +112,7 @@ public class Main {
                 .register("broker-ip", String.class, false)
                 .register("level", Integer.TYPE, false, 5, NumberUtil::isGraterThanZero)
                 .withLogger(NPC_LOGGER);
-        if (args.length == 1) {
+        if (args.length >= 1) {
             configBuilder.withFile(Path.of(args[0]));
         }
         var conf = configBuilder.create();
@@ -120,38 +126,45 @@ public class Main {
         Properties producerProperties = new Properties();
         producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, Config.getString("broker-ip"));
         producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
         producer = new KafkaProducer<>(producerProperties);
         Properties consumerProperties = new Properties();
         consumerProperties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, Config.getString("broker-ip"));
         consumerProperties.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
                 StringDeserializer.class.getName());
         consumerProperties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                StringDeserializer.class.getName());
+                ByteArrayDeserializer.class.getName());
         consumerProperties.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "AA_NPC-" + ID);
         consumerProperties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
         consumer = new KafkaConsumer<>(consumerProperties);
         consumer.subscribe(Arrays.asList(KafkaTopic.NPC_JOIN_LEAVE, KafkaTopic.ENGINE_KEEP_ALIVE));
-        if (args.length == 2) {
-            token = args[1];
+        if (args.length == 3) {
+            Optional<Integer> parsedToken = NumberUtil.tryParseInt(args[1]);
+            if (parsedToken.isEmpty()) {
+                System.out.println(args[1] + " is not a valid token");
+                System.exit(-1);
+            }
+            token = parsedToken.get();
+            gameId = args[2];
         } else {
             if (!requestToken(Config.getInt("level"))) {
                 System.out.println("Could not get token, server did no respond");
                 System.exit(-1);
             }
         }
-        NPC_LOGGER.info("Using " + token + " as token");
+        NPC_LOGGER.info("Using " + token + " as token in game " + gameId);
         run();
     }
 
     private static boolean requestToken(int level) {
-        producer.send(new ProducerRecord<>(KafkaTopic.NPC_JOIN_LEAVE, "join:" + level + ":" + ID));
+        producer.send(new ProducerRecord<>(KafkaTopic.NPC_JOIN_LEAVE, KafkaMessage.npcJoin(level, ID)));
         System.out.println("Requested token");
-        String expectedMessageStart = "accept:" + ID + ":";
         for (var message : consumer.poll(Duration.ofMillis(6000))) {
-            System.out.println(message.value());
-            if (message.value().startsWith(expectedMessageStart)) {
-                token = message.value().substring(expectedMessageStart.length());
+            if (KafkaMessage.type(message.value()) == KafkaMessage.NPC_ACCEPT
+                    && KafkaMessage.isAcceptFor(message.value(), ID)) {
+                token = KafkaMessage.acceptedToken(message.value());
+                // The engine keys every record with the id of the game that accepted us
+                gameId = message.key();
                 return true;
             }
         }
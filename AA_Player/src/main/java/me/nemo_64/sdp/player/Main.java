@@ -20,6 +20,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,7 +53,7 @@ public class Main {
     public static void main(String[] args) {
         SSLFix.execute();
         System.setProperty("com.sun.net.ssl.checkRevocation", "false");
-        if (args.length != 1 && args.length != 3) {
+        if (args.length != 1 && args.length != 4) {
             showUsage();
             System.exit(-1);
         }
@@ -69,6 +70,7 @@ public class Main {
                 .register(REST_REQUEST_TIMEOUT, Integer.class, false, 3000, NumberUtil::isGraterThanZero)
                 .register(REST_REQUEST_HTTP_VERSION, HttpClient.Version.class, false, HttpClient.Version.HTTP_1_1)
                 .register(REGISTRY_HTTP_IP, String.class, false)
+                .register(ENGINE_TIMEOUT, Integer.class, false, 3000, NumberUtil::isGraterThanZero)
                 .withLogger(PLAYER_LOGGER);
         if (args.length >= 1) {
             confBuilder.withFile(Path.of(args[0]));
@@ -82,8 +84,14 @@ public class Main {
 
         PLAYER_LOGGER.info("Using the following configuration:" + Config.getInstance().display("  "));
 
-        if (args.length == 3) {
-            System.out.println("Reconnecting with token " + args[1] + " and password " + args[2]);
+        if (args.length == 4) {
+            System.out.println(
+                    "Reconnecting to game " + args[3] + " with token " + args[1] + " and password " + args[2]);
+            Optional<Integer> token = NumberUtil.tryParseInt(args[1]);
+            if (token.isEmpty()) {
+                System.out.println(args[1] + " is not a valid token");
+                System.exit(-1);
+            }
             SymmetricCipher symmetricCipher;
             try {
                 symmetricCipher = SymmetricCipher.create(args[2]);
@@ -92,7 +100,8 @@ public class Main {
                         "A theoretically impossible exception was thrown: " + e.getClass() + ": " + e.getMessage());
                 throw new RuntimeException(e);
             }
-            OngoingGame game = new OngoingGame(args[1], Config.getString(BOOTSTRAP_IP), symmetricCipher);
+            OngoingGame game = new OngoingGame(token.get(), args[3], Config.getString(BOOTSTRAP_IP),
+                    symmetricCipher);
             game.play(true);
             game.waitUntilFinish();
         }
@@ -135,7 +144,7 @@ public class Main {
     }
 
     private static void showUsage() {
-        System.out.println("AA_Player <config> [token]");
+        System.out.println("AA_Player <config> [token password game]");
     }
 
 }
@@ -1,13 +1,21 @@
 package me.nemo_64.sdp.player;
 
+import me.nemo_64.sdp.player.util.ConfigurationEntry;
 import me.nemo_64.sdp.player.util.MovementListener;
+import me.nemo_64.sdp.utilities.KafkaMessage;
 import me.nemo_64.sdp.utilities.KafkaTopic;
+import me.nemo_64.sdp.utilities.configuration.Config;
+import me.nemo_64.sdp.utilities.data.City;
+import me.nemo_64.sdp.utilities.map.MapCompression;
+import me.nemo_64.sdp.utilities.map.MapMessage;
+import me.nemo_64.sdp.utilities.map.MapView;
 import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
@@ -16,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -31,24 +40,30 @@ public class OngoingGame {
     private static final ScheduledExecutorService EXECUTOR_SERVICE = Executors.newSingleThreadScheduledExecutor();
 
     private ScheduledFuture<?> keepAliveSender;
-    private final String token;
+    private final int token;
+    private final String gameId;
     private final SymmetricCipher symmetricCipher;
     private final KafkaConsumer<String, String> consumer;
-    private final KafkaProducer<String, String> producer;
+    private final KafkaProducer<String, byte[]> producer;
     private final MovementListener movementListener = new MovementListener(this::handleMovement);
     private final Thread gameLoopThread = new Thread(this::gameLoop);
     private final AtomicBoolean died = new AtomicBoolean(false);
     private boolean gameStarted = false;
     private final CompletableFuture<Void> finishFuture = new CompletableFuture<>();
     private final AtomicLong lastEngineNotification = new AtomicLong(System.currentTimeMillis());
+    private final MapView mapView = new MapView();
+    private final MapCompression mapCompression = MapCompression.reader();
+    // The engine may stay quiet on the map topic for its max idle time, so it is only given up on after a few of them
+    private final long engineTimeout = Config.getOptionalInt(ConfigurationEntry.ENGINE_TIMEOUT).orElse(3000);
 
-    public OngoingGame(String token, String brokerIp, SymmetricCipher symmetricCipher) {
+    public OngoingGame(int token, String gameId, String brokerIp, SymmetricCipher symmetricCipher) {
         this.token = token;
+        this.gameId = gameId;
         this.symmetricCipher = symmetricCipher;
         Properties producerProperties = new Properties();
         producerProperties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerIp);
         producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
         this.producer = new KafkaProducer<>(producerProperties);
         Properties consumerProperties = new Properties();
         consumerProperties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerIp);
@@ -68,17 +83,12 @@ public class OngoingGame {
         lastEngineNotification.set(System.currentTimeMillis());
         while (!finishFuture.isDone()) {
             var records = consumer.poll(Duration.ofMillis(20));
-            if (records.count() > 0)
-                lastEngineNotification.set(System.currentTimeMillis());
-            if (gameStarted && lastEngineNotification.get() + 1000 < System.currentTimeMillis()) {
-                System.out.println("Is the server down?");
-                try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException e) {
-                }
-                continue;
-            }
+            // The records are handled before checking the engine, so a late keyframe is not dropped while backing off
             for (var record : records) {
+                // Other games hosted by the same engine share the topics
+                if (!gameId.equals(record.key()))
+                    continue;
+                lastEngineNotification.set(System.currentTimeMillis());
                 switch (record.topic()) {
                     case KafkaTopic.ENGINE_KEEP_ALIVE -> {
                     } // IGNORED
@@ -101,6 +111,13 @@ public class OngoingGame {
                     }
                 }
             }
+            if (gameStarted && lastEngineNotification.get() + engineTimeout < System.currentTimeMillis()) {
+                System.out.println("Is the server down?");
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                }
+            }
         }
     }
 
@@ -108,6 +125,7 @@ public class OngoingGame {
         finishFuture.complete(null);
         keepAliveSender.cancel(true);
         movementListener.setVisible(false);
+        mapCompression.close();
     }
 
     public void play(boolean alreadyStarted) {
@@ -119,14 +137,18 @@ public class OngoingGame {
     }
 
     private void sendKeepAlive() {
-        producer.send(new ProducerRecord<>(KafkaTopic.MOVABLE_KEEP_ALIVE, token + ":" + System.currentTimeMillis()));
+        producer.send(new ProducerRecord<>(KafkaTopic.MOVABLE_KEEP_ALIVE, gameId,
+                KafkaMessage.keepAlive(token, System.currentTimeMillis())));
     }
 
     private void handleMovement(String s) {
         if (died.get()) {
             finish();
         } else {
-            producer.send(new ProducerRecord<>(KafkaTopic.MOVEMENT, token + ":" + s));
+            byte direction = KafkaMessage.directionFor(s);
+            if (direction >= 0)
+                producer.send(
+                        new ProducerRecord<>(KafkaTopic.MOVEMENT, gameId, KafkaMessage.movement(token, direction)));
         }
     }
 
@@ -137,15 +159,62 @@ public class OngoingGame {
             System.out.println("YOU DIED");
             System.out.println("PRESS ANY KEY TO LEAVE");
         }
+        // Deltas after a missed message are dropped until the next keyframe arrives
+        Optional<byte[]> message = decrypt(value);
+        if (message.isEmpty() || !mapView.apply(message.get()))
+            return;
+        int width = mapView.getWidth();
+        int height = mapView.getHeight();
+        int rowNumberDigits = Math.max(2, String.valueOf(height).length());
+        StringBuilder map = new StringBuilder((rowNumberDigits + 2 + width * 3) * (height + 1));
+        // Column numbers wrap at 1000 so every label fits on its three character cell
+        StringBuilder header = new StringBuilder(" ".repeat(rowNumberDigits + 2));
+        for (int column = 0; column < width; column++)
+            header.append("%-3d".formatted((column + 1) % 1000));
+        map.append(header.toString().stripTrailing()).append('\n');
+        String rowNumberFormat = "%" + rowNumberDigits + "d ";
+        for (int row = 0; row < height; row++) {
+            map.append(rowNumberFormat.formatted(row + 1));
+            for (int column = 0; column < width; column++)
+                map.append(cellOf(mapView.kindAt(column, row), mapView.tokenAt(column, row)));
+            map.append('\n');
+        }
+        for (City city : mapView.getCities())
+            map.append(city.prettyPrint()).append('\n');
+        for (MapMessage.Entity entity : mapView.getEntities()) {
+            String name = entity.kind() == MapMessage.PLAYER ? entity.name() : "NPC";
+            map.append("%s (%s): %d".formatted(name, entity.token(), entity.level())).append('\n');
+        }
         // System.out.print("\033[H\033[2J");
-        System.out.print(decrypt(value));
+        System.out.print(map);
         System.out.flush();
     }
 
-    public String decrypt(String msg) {
-        // return msg;
+    private String cellOf(byte kind, int token) {
+        return switch (kind) {
+            case MapMessage.EMPTY -> "   ";
+            case MapMessage.FOOD -> " F ";
+            case MapMessage.MINE -> " M ";
+            case MapMessage.NPC -> "NPC";
+            case MapMessage.PLAYER -> mapView.getEntity(token).map((entity) -> aliasCell(entity.name())).orElse(" ? ");
+            default -> " ? ";
+        };
+    }
+
+    private static String aliasCell(String alias) {
+        if (alias.length() == 1)
+            return " " + alias + " ";
+        if (alias.length() == 2)
+            return alias + " ";
+        if (alias.length() > 3)
+            return alias.substring(0, 3);
+        return alias;
+    }
+
+    // Empty if the message can not be decompressed
+    public Optional<byte[]> decrypt(String msg) {
         byte[] receivedBytes = Base64.getDecoder().decode(msg.getBytes(StandardCharsets.UTF_8));
-        return new String(symmetricCipher.decrypt(receivedBytes), StandardCharsets.UTF_8);
+        return mapCompression.decompress(symmetricCipher.decrypt(receivedBytes));
     }
 
     public void waitUntilFinish() {
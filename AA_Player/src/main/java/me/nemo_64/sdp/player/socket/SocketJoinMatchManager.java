@@ -4,6 +4,7 @@ import me.nemo_64.sdp.player.JoinMatchManager;
 import me.nemo_64.sdp.player.OngoingGame;
 import me.nemo_64.sdp.player.util.ConfigurationEntry;
 import me.nemo_64.sdp.player.util.PlayerData;
+import me.nemo_64.sdp.utilities.NumberUtil;
 import me.nemo_64.sdp.utilities.configuration.Config;
 import me.nemo_64.sdp.utilities.secure.SymmetricCipher;
 import me.nemo_64.sdp.utilities.socket.ClientSocketSession;
@@ -12,6 +13,7 @@ import javax.crypto.NoSuchPaddingException;
 import java.io.IOException;
 import java.net.Socket;
 import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
 
 public class SocketJoinMatchManager extends JoinMatchManager {
 
@@ -57,11 +59,21 @@ public class SocketJoinMatchManager extends JoinMatchManager {
                     return;
                 }
             }
-            String[] response = engineResponse.value().split(":", 2);
+            String[] response = engineResponse.value().split(":", 3);
+            if (response.length != 3) {
+                LOGGER.warning("Invalid engine response: " + engineResponse.value());
+                System.out.println("The engine sent an invalid response: " + engineResponse.value());
+                return;
+            }
             String password = response[0];
-            String token = response[1];
+            Optional<Integer> token = NumberUtil.tryParseInt(response[1]);
+            String gameId = response[2];
+            if (token.isEmpty()) {
+                System.out.println("The engine sent an invalid token: " + response[1]);
+                return;
+            }
 
-            LOGGER.info("Received " + token + " as token and " + password + " as password");
+            LOGGER.info("Received " + token.get() + " as token and " + password + " as password for game " + gameId);
             SymmetricCipher symmetricCipher = null;
             try {
                 symmetricCipher = SymmetricCipher.create(password);
@@ -71,7 +83,7 @@ public class SocketJoinMatchManager extends JoinMatchManager {
                 throw new RuntimeException(e);
             }
             System.out.println("Found a game. Connecting to game");
-            OngoingGame game = new OngoingGame(token, brokerIp, symmetricCipher);
+            OngoingGame game = new OngoingGame(token.get(), gameId, brokerIp, symmetricCipher);
             game.play(false);
             game.waitUntilFinish();
         } catch (IOException e) {
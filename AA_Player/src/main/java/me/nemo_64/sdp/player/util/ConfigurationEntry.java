@@ -11,6 +11,7 @@ public final class ConfigurationEntry {
     public static final String REGISTRY_HTTP_IP = "registry-http-ip";
     public static final String BOOTSTRAP_IP = "bootstrap-ip";
     public static final String KAFKA_ENCRYPTION_ALGORITHM = "kafka-encryption-algorithm";
+    public static final String ENGINE_TIMEOUT = "engine-timeout";
 
     private ConfigurationEntry() {
     }
@@ -7,59 +7,129 @@ import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
 import me.nemo_64.sdp.api.util.ConfigurationEntry;
 import me.nemo_64.sdp.utilities.configuration.Config;
+import me.nemo_64.sdp.utilities.snapshot.SnapshotLayout;
+import me.nemo_64.sdp.utilities.snapshot.SnapshotReader;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 public class GameMapSupplier implements Supplier<Optional<JsonObject>> {
 
-    private final AtomicLong lastUpdate = new AtomicLong(System.currentTimeMillis());
     private final long cacheTime = Config.getInt(ConfigurationEntry.CACHE_TIME);
-    private final Path filePath = Config.getPath(ConfigurationEntry.MAP_FILE);
-    private final AtomicReference<JsonObject> map = new AtomicReference<>(null);
+    private final Path gamesFolder = Config.getPath(ConfigurationEntry.GAMES_FOLDER);
+    private final Map<String, CachedGame> games = new ConcurrentHashMap<>();
+    private final Map<String, SnapshotReader> snapshots = new ConcurrentHashMap<>();
 
+    // The game whose save was written last
     @Override
     public Optional<JsonObject> get() {
-        if (map.get() == null || lastUpdate.get() + cacheTime < System.currentTimeMillis())
-            updateCache();
-        return Optional.ofNullable(map.get());
+        if (!Files.isDirectory(gamesFolder))
+            return Optional.empty();
+        try (var files = Files.list(gamesFolder)) {
+            return files.filter((file) -> gameIdOf(file).isPresent())
+                    .max(Comparator.comparing(GameMapSupplier::lastModified))
+                    .flatMap(GameMapSupplier::gameIdOf)
+                    .flatMap(this::get);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Games the engine is running are read from their snapshot, which is always up to date. The saved file is only
+    // used for games without one
+    public Optional<JsonObject> get(String gameId) {
+        if (!isValidGameId(gameId))
+            return Optional.empty();
+        Optional<JsonObject> snapshot = readSnapshot(gameId);
+        if (snapshot.isPresent())
+            return snapshot;
+        CachedGame cached = games.get(gameId);
+        if (cached == null || cached.lastUpdate + cacheTime < System.currentTimeMillis()) {
+            cached = read(gameFile(gameId)).map((json) -> new CachedGame(json, System.currentTimeMillis()))
+                    .orElse(null);
+            if (cached == null) {
+                games.remove(gameId);
+                return Optional.empty();
+            }
+            games.put(gameId, cached);
+        }
+        return Optional.of(cached.json);
+    }
+
+    private Optional<JsonObject> readSnapshot(String gameId) {
+        SnapshotReader reader = snapshots.get(gameId);
+        if (reader == null) {
+            Path file = gamesFolder.resolve(gameId + SnapshotLayout.EXTENSION);
+            if (!Files.exists(file))
+                return Optional.empty();
+            Optional<SnapshotReader> opened = SnapshotReader.open(file);
+            if (opened.isEmpty())
+                return Optional.empty();
+            reader = opened.get();
+            SnapshotReader previous = snapshots.putIfAbsent(gameId, reader);
+            if (previous != null) {
+                reader.close();
+                reader = previous;
+            }
+        }
+        Optional<JsonObject> json = reader.read(gameId);
+        // The game finished or its snapshot was replaced, it is opened again on the next request
+        if (json.isEmpty() && snapshots.remove(gameId, reader))
+            reader.close();
+        return json;
+    }
+
+    private static Optional<String> gameIdOf(Path file) {
+        String name = file.getFileName().toString();
+        for (String extension : new String[] { ".json", SnapshotLayout.EXTENSION })
+            if (name.endsWith(extension))
+                return Optional.of(name.substring(0, name.length() - extension.length()));
+        return Optional.empty();
+    }
+
+    private static boolean isValidGameId(String gameId) {
+        return !gameId.isEmpty() && gameId.chars().allMatch(Character::isLetterOrDigit);
     }
 
-    private boolean updateCache() {
+    private Path gameFile(String gameId) {
+        return gamesFolder.resolve(gameId + ".json");
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static Optional<JsonObject> read(Path filePath) {
         if (!Files.exists(filePath))
-            return false;
+            return Optional.empty();
         try (JsonReader reader = new JsonReader(Files.newBufferedReader(filePath))) {
             reader.setLenient(false);
             JsonElement element = JsonParser.parseReader(reader);
             if (!element.isJsonObject()) {
                 // TODO
-                return false;
+                return Optional.empty();
             }
-            JsonObject json = element.getAsJsonObject();
-            /*
-             * if (! json.has("map") || ! json.get("map").isJsonArray()) {
-             * // TODO
-             * return false;
-             * }
-             * if (! json.has("cities") || ! json.get("cities").isJsonArray()) {
-             * // TODO
-             * return false;
-             * }
-             */
-            map.set(json);
-            lastUpdate.set(System.currentTimeMillis());
-            return true;
+            return Optional.of(element.getAsJsonObject());
         } catch (JsonParseException e) {
             /// TODO
-            return false;
+            return Optional.empty();
         } catch (IOException e) {
             /// TODO
-            return false;
+            return Optional.empty();
         }
     }
+
+    private record CachedGame(JsonObject json, long lastUpdate) {
+    }
 }
@@ -53,7 +53,7 @@ public class Main {
                 .register(GAME_HTTP_SERVER_IP, String.class, false, "localhost")
                 .register(GAME_HTTP_SERVER_PORT, Integer.class, false, 5999, NetworkUtil::isValidPort)
                 .register(NO_GAME_FOUND_MESSAGE, String.class, false, "No game found")
-                .register(MAP_FILE, String.class, false, "latestGame.json")
+                .register(GAMES_FOLDER, String.class, false, "games")
                 .register(CACHE_TIME, Integer.class, false, 20, NumberUtil::isGraterThanZero)
                 .register(UNSUPPORTED_METHOD_MESSAGE, String.class, false)
                 .withLogger(API_ENGINE_LOGGER);
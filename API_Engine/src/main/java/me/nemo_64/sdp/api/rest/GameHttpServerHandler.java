@@ -3,6 +3,7 @@ package me.nemo_64.sdp.api.rest;
 import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import me.nemo_64.sdp.api.GameMapSupplier;
 import me.nemo_64.sdp.api.util.ConfigurationEntry;
 import me.nemo_64.sdp.utilities.HttpResponseCode;
 import me.nemo_64.sdp.utilities.NetworkUtil;
@@ -11,16 +12,15 @@ import me.nemo_64.sdp.utilities.configuration.Config;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class GameHttpServerHandler implements HttpHandler {
 
     private static final Logger LOGGER = Logger.getLogger(GameHttpServerHandler.class.getName());
 
-    private final Supplier<Optional<JsonObject>> responseSupplier;
+    private final GameMapSupplier responseSupplier;
 
-    GameHttpServerHandler(Supplier<Optional<JsonObject>> responseSupplier) {
+    GameHttpServerHandler(GameMapSupplier responseSupplier) {
         this.responseSupplier = responseSupplier;
     }
 
@@ -52,7 +52,9 @@ public class GameHttpServerHandler implements HttpHandler {
 
     private void handleGet(HttpExchange exchange, String[] args) throws IOException {
         String address = NetworkUtil.addressOf(exchange.getRemoteAddress());
-        var game = responseSupplier.get().map(JsonObject::toString).map((str) -> str.getBytes(StandardCharsets.UTF_8));
+        // /game serves the most recently saved game and /game/<id> a specific one
+        Optional<JsonObject> json = args.length > 2 ? responseSupplier.get(args[2]) : responseSupplier.get();
+        var game = json.map(JsonObject::toString).map((str) -> str.getBytes(StandardCharsets.UTF_8));
         if (game.isEmpty()) {
             byte[] response = Config.getString(ConfigurationEntry.NO_GAME_FOUND_MESSAGE)
                     .getBytes(StandardCharsets.UTF_8);
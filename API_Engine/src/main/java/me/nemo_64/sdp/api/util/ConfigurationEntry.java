@@ -7,7 +7,7 @@ public final class ConfigurationEntry {
 
     public static final String UNSUPPORTED_METHOD_MESSAGE = "unsupported-method-message";
     public static final String NO_GAME_FOUND_MESSAGE = "no-game-found-response";
-    public static final String MAP_FILE = "map-file";
+    public static final String GAMES_FOLDER = "games-folder";
     public static final String CACHE_TIME = "cache-time";
     public static final String GAME_HTTP_SERVER_IP = "game-http-server-ip";
     public static final String GAME_HTTP_SERVER_PORT = "game-http-server-port";
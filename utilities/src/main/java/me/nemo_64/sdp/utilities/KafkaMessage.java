@@ -0,0 +1,146 @@
+package me.nemo_64.sdp.utilities;
+
+import java.util.UUID;
+
+// Binary layout of the records on the movement, movable keep alive and npc join/leave topics. Every message starts
+// with its type and numbers are big endian. The readers work on the raw record value and do not allocate
+public final class KafkaMessage {
+
+    private KafkaMessage() {
+    }
+
+    public static final byte MOVEMENT = 1; // type, token, direction
+    public static final byte KEEP_ALIVE = 2; // type, token, timestamp
+    public static final byte NPC_JOIN = 3; // type, level, npc id
+    public static final byte NPC_ACCEPT = 4; // type, npc id, token
+    public static final byte NPC_DIE = 5; // type, token
+    public static final byte GAME_ENDED = 6; // type
+
+    // Movement codes in the order of their direction byte
+    private static final String[] DIRECTIONS = { "NW", "N", "NE", "W", "E", "SW", "S", "SE" };
+
+    public static final int DIRECTION_COUNT = DIRECTIONS.length;
+
+    public static byte directionFor(String code) {
+        for (int i = 0; i < DIRECTIONS.length; i++)
+            if (DIRECTIONS[i].equals(code))
+                return (byte) i;
+        return -1;
+    }
+
+    public static String directionName(int direction) {
+        return direction >= 0 && direction < DIRECTIONS.length ? DIRECTIONS[direction] : "?";
+    }
+
+    public static byte[] movement(int token, byte direction) {
+        byte[] message = new byte[6];
+        message[0] = MOVEMENT;
+        putInt(message, 1, token);
+        message[5] = direction;
+        return message;
+    }
+
+    public static byte[] keepAlive(int token, long timestamp) {
+        byte[] message = new byte[13];
+        message[0] = KEEP_ALIVE;
+        putInt(message, 1, token);
+        putLong(message, 5, timestamp);
+        return message;
+    }
+
+    public static byte[] npcJoin(int level, UUID npc) {
+        byte[] message = new byte[21];
+        message[0] = NPC_JOIN;
+        putInt(message, 1, level);
+        putLong(message, 5, npc.getMostSignificantBits());
+        putLong(message, 13, npc.getLeastSignificantBits());
+        return message;
+    }
+
+    public static byte[] npcAccept(UUID npc, int token) {
+        byte[] message = new byte[21];
+        message[0] = NPC_ACCEPT;
+        putLong(message, 1, npc.getMostSignificantBits());
+        putLong(message, 9, npc.getLeastSignificantBits());
+        putInt(message, 17, token);
+        return message;
+    }
+
+    public static byte[] npcDie(int token) {
+        byte[] message = new byte[5];
+        message[0] = NPC_DIE;
+        putInt(message, 1, token);
+        return message;
+    }
+
+    public static byte[] gameEnded() {
+        return new byte[] { GAME_ENDED };
+    }
+
+    // The type of the message, or -1 if its length does not match the one of its type
+    public static byte type(byte[] message) {
+        if (message == null || message.length == 0)
+            return -1;
+        int expected = switch (message[0]) {
+            case MOVEMENT -> 6;
+            case KEEP_ALIVE -> 13;
+            case NPC_JOIN, NPC_ACCEPT -> 21;
+            case NPC_DIE -> 5;
+            case GAME_ENDED -> 1;
+            default -> -1;
+        };
+        return message.length == expected ? message[0] : -1;
+    }
+
+    // Movement, keep alive and die messages
+    public static int token(byte[] message) {
+        return getInt(message, 1);
+    }
+
+    public static byte direction(byte[] message) {
+        return message[5];
+    }
+
+    public static long timestamp(byte[] message) {
+        return getLong(message, 5);
+    }
+
+    public static int joinLevel(byte[] message) {
+        return getInt(message, 1);
+    }
+
+    public static UUID joinNpc(byte[] message) {
+        return new UUID(getLong(message, 5), getLong(message, 13));
+    }
+
+    public static boolean isAcceptFor(byte[] message, UUID npc) {
+        return getLong(message, 1) == npc.getMostSignificantBits()
+                && getLong(message, 9) == npc.getLeastSignificantBits();
+    }
+
+    public static int acceptedToken(byte[] message) {
+        return getInt(message, 17);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        putInt(bytes, offset, (int) (value >>> 32));
+        putInt(bytes, offset + 4, (int) value);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        return (long) getInt(bytes, offset) << 32 | (getInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+}
@@ -25,6 +25,10 @@ public class Config {
         return getOptional(key, Integer.class);
     }
 
+    public static Optional<Long> getOptionalLong(String key) {
+        return getOptional(key, Long.class);
+    }
+
     public static Optional<Double> getOptionalDouble(String key) {
         return getOptional(key, Double.class);
     }
@@ -41,6 +45,10 @@ public class Config {
         return get(key, Integer.class);
     }
 
+    public static long getLong(String key) {
+        return get(key, Long.class);
+    }
+
     public static double getDouble(String key) {
         return get(key, Double.class);
     }
@@ -24,6 +24,14 @@ public class ConfigurationBuilder {
         }
     };
 
+    public static final Function<String, Result<?, ConfigurationParseError>> LONG_PARSER = (str) -> {
+        try {
+            return Result.ok(Long.parseLong(str));
+        } catch (NumberFormatException e) {
+            return Result.err(ConfigurationParseError.invalidFormat(str + " is not a valid long"));
+        }
+    };
+
     public static final Function<String, Result<?, ConfigurationParseError>> DOUBLE_PARSER = (str) -> {
         try {
             return Result.ok(Double.parseDouble(str));
@@ -76,6 +84,7 @@ public class ConfigurationBuilder {
 
     public ConfigurationBuilder registerPrimitiveParsers() {
         registerParser(Integer.class, INTEGER_PARSER);
+        registerParser(Long.class, LONG_PARSER);
         registerParser(Double.class, DOUBLE_PARSER);
         registerParser(String.class, STRING_PARSER);
         registerParser(Boolean.class, BOOLEAN_PARSER);
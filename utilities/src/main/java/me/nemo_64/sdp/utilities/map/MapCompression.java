@@ -0,0 +1,120 @@
+package me.nemo_64.sdp.utilities.map;
+
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Optional compression of map messages, applied before they are encrypted. Compressed messages start with a byte
+// that says how the rest was compressed, so readers do not need to know the algorithm of the engine. Messages that
+// would not get smaller are sent as they are. The zlib streams hold native memory, so it must be closed once the game
+// or the reader is done with it
+public final class MapCompression implements AutoCloseable {
+
+    public static final String NONE = "none";
+    public static final String DEFLATE = "deflate";
+
+    private static final byte RAW = 0; // raw message
+    private static final byte DEFLATED = 1; // length of the raw message, deflated message
+
+    // Messages claiming to be larger than this are not inflated
+    private static final int MAX_MESSAGE_SIZE = 1 << 28;
+
+    public static boolean isValidAlgorithm(String algorithm) {
+        return NONE.equals(algorithm) || DEFLATE.equals(algorithm);
+    }
+
+    public static boolean isValidLevel(int level) {
+        return level == Deflater.DEFAULT_COMPRESSION
+                || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+    }
+
+    public static MapCompression of(String algorithm, int level) {
+        return new MapCompression(DEFLATE.equals(algorithm) ? new Deflater(level) : null);
+    }
+
+    // Only decompresses
+    public static MapCompression reader() {
+        return new MapCompression(null);
+    }
+
+    private final Deflater deflater;
+    private final MapMessage.Writer output = new MapMessage.Writer(1024);
+    private final byte[] chunk = new byte[8192];
+    private Inflater inflater;
+    private boolean closed = false;
+
+    private MapCompression(Deflater deflater) {
+        this.deflater = deflater;
+    }
+
+    // The compressed message is on the returned writer until the next call
+    public synchronized MapMessage.Writer compress(byte[] bytes, int offset, int length) {
+        if (closed)
+            throw new IllegalStateException("The compression is closed");
+        output.reset();
+        if (deflater != null) {
+            output.putByte(DEFLATED).putInt(length);
+            deflater.reset();
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            while (!deflater.finished() && output.length() < length)
+                output.putBytes(chunk, 0, deflater.deflate(chunk));
+            if (deflater.finished() && output.length() < length + 1)
+                return output;
+            output.reset();
+        }
+        return output.putByte(RAW).putBytes(bytes, offset, length);
+    }
+
+    // Empty if the message is not valid or the compression is closed
+    public synchronized Optional<byte[]> decompress(byte[] message) {
+        if (closed || message.length == 0)
+            return Optional.empty();
+        if (message[0] == RAW) {
+            byte[] raw = new byte[message.length - 1];
+            System.arraycopy(message, 1, raw, 0, raw.length);
+            return Optional.of(raw);
+        }
+        if (message[0] != DEFLATED || message.length < 5)
+            return Optional.empty();
+        int length = ((message[1] & 0xFF) << 24) | ((message[2] & 0xFF) << 16) | ((message[3] & 0xFF) << 8)
+                | (message[4] & 0xFF);
+        if (length < 0 || length > MAX_MESSAGE_SIZE)
+            return Optional.empty();
+        if (inflater == null)
+            inflater = new Inflater();
+        inflater.reset();
+        inflater.setInput(message, 5, message.length - 5);
+        byte[] raw = new byte[length];
+        try {
+            int inflated = 0;
+            while (!inflater.finished()) {
+                // Once the message is full the end of the stream is all that may be left
+                int read = inflated < length
+                        ? inflater.inflate(raw, inflated, length - inflated)
+                        : inflater.inflate(chunk, 0, 1);
+                if ((inflated >= length && read > 0)
+                        || (read == 0 && (inflater.needsInput() || inflater.needsDictionary())))
+                    return Optional.empty();
+                inflated += read;
+            }
+            return inflated == length ? Optional.of(raw) : Optional.empty();
+        } catch (DataFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Can be called more than once
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (deflater != null)
+            deflater.end();
+        if (inflater != null)
+            inflater.end();
+    }
+
+}
@@ -0,0 +1,124 @@
+package me.nemo_64.sdp.utilities.map;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Messages of the map topic. They carry what is on the map, not how it looks, so every reader draws it the way it
+// wants. A keyframe carries the whole map and a delta only the cells, entities and cities that changed since the
+// message before it. Every message has a sequence number one higher than the previous one, so a reader that misses
+// a message waits for the next keyframe. Strings are an int length followed by UTF-8 bytes and numbers are big
+// endian
+public final class MapMessage {
+
+    private MapMessage() {
+    }
+
+    public static final byte VERSION = 2;
+
+    // version, type, sequence, width, height, cells, cities, entities
+    // Only the cells with something on them are sent, row by row. Each is the amount of empty cells since the
+    // previous one, its kind and, if the kind is a movable, its token
+    public static final byte KEYFRAME = 1;
+    // version, type, sequence, cells, changed entities, removed tokens, cities
+    // Cells are x, y, kind and token, which is 0 if the cell has no movable. Cities are only sent when they changed,
+    // otherwise the list is empty
+    public static final byte DELTA = 2;
+
+    // Kind of the element drawn on a cell, the first one the cell has
+    public static final byte EMPTY = 0;
+    public static final byte FOOD = 1;
+    public static final byte MINE = 2;
+    public static final byte NPC = 3;
+    public static final byte PLAYER = 4;
+    public static final byte UNKNOWN = 5;
+
+    public static boolean isMovable(byte kind) {
+        return kind == NPC || kind == PLAYER;
+    }
+
+    // Cities are name and temperature. Entities are token, kind, level and name, which is empty for NPCs
+    public record Entity(int token, byte kind, int level, String name) {
+    }
+
+    // Builds messages on a buffer that is kept between messages, it only grows when a message does not fit
+    public static final class Writer {
+
+        private byte[] bytes;
+        private int length;
+
+        public Writer(int capacity) {
+            this.bytes = new byte[Math.max(capacity, 64)];
+        }
+
+        public void reset() {
+            length = 0;
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public Writer putByte(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        public Writer putInt(int value) {
+            ensure(4);
+            setInt(length, value);
+            length += 4;
+            return this;
+        }
+
+        // Overwrites an int written before, used for counts that are only known once the items are written
+        public Writer setInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+            return this;
+        }
+
+        public Writer putDouble(double value) {
+            return putLong(Double.doubleToLongBits(value));
+        }
+
+        public Writer putLong(long value) {
+            putInt((int) (value >>> 32));
+            return putInt((int) value);
+        }
+
+        public Writer putBytes(byte[] source, int offset, int count) {
+            ensure(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+            return this;
+        }
+
+        // A string already encoded as UTF-8
+        public Writer putString(byte[] utf8) {
+            return putString(utf8, 0, utf8.length);
+        }
+
+        public Writer putString(byte[] utf8, int offset, int count) {
+            putInt(count);
+            return putBytes(utf8, offset, count);
+        }
+
+        public Writer putString(String string) {
+            return putString(string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void ensure(int count) {
+            if (length + count > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+        }
+
+    }
+
+}
@@ -0,0 +1,173 @@
+package me.nemo_64.sdp.utilities.map;
+
+import me.nemo_64.sdp.utilities.data.City;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// The map as the last messages left it. Deltas are only applied on top of the message right before them; after a
+// gap the view waits for the next keyframe. Only the cells with something on them are kept, by their index in row
+// order, with the kind in the high bits and the token in the low ones
+public final class MapView {
+
+    private long sequence = -1;
+    private boolean synced = false;
+    private int width;
+    private int height;
+    private Map<Integer, Long> cells = new HashMap<>();
+    private List<City> cities = List.of();
+    private final Map<Integer, MapMessage.Entity> entities = new LinkedHashMap<>();
+
+    // True if the message was applied, false if the view is waiting for a keyframe or the message is invalid
+    public boolean apply(byte[] message) {
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(message);
+            if (bytes.get() != MapMessage.VERSION) {
+                synced = false;
+                return false;
+            }
+            byte type = bytes.get();
+            long messageSequence = bytes.getLong();
+            if (type == MapMessage.KEYFRAME) {
+                applyKeyframe(bytes);
+            } else if (type == MapMessage.DELTA) {
+                if (!synced || messageSequence != sequence + 1) {
+                    synced = false;
+                    return false;
+                }
+                applyDelta(bytes);
+            } else {
+                return false;
+            }
+            sequence = messageSequence;
+            synced = true;
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            synced = false;
+            return false;
+        }
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte kindAt(int x, int y) {
+        Long cell = cells.get(y * width + x);
+        return cell == null ? MapMessage.EMPTY : (byte) (cell >>> 32);
+    }
+
+    // Token of the movable drawn on the cell, 0 if there is none
+    public int tokenAt(int x, int y) {
+        Long cell = cells.get(y * width + x);
+        return cell == null ? 0 : (int) (long) cell;
+    }
+
+    public Optional<MapMessage.Entity> getEntity(int token) {
+        return Optional.ofNullable(entities.get(token));
+    }
+
+    public Collection<MapMessage.Entity> getEntities() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    public List<City> getCities() {
+        return cities;
+    }
+
+    private void applyKeyframe(ByteBuffer bytes) {
+        int newWidth = bytes.getInt();
+        int newHeight = bytes.getInt();
+        if (newWidth < 0 || newHeight < 0 || (long) newWidth * newHeight > Integer.MAX_VALUE)
+            throw new IndexOutOfBoundsException("The map is too big: " + newWidth + "x" + newHeight);
+        int count = bytes.getInt();
+        Map<Integer, Long> newCells = new HashMap<>();
+        long cell = -1;
+        for (int i = 0; i < count; i++) {
+            int skipped = bytes.getInt();
+            cell += (long) skipped + 1;
+            if (skipped < 0 || cell >= (long) newWidth * newHeight)
+                throw new IndexOutOfBoundsException("Cell " + cell + " is not on the map");
+            byte kind = bytes.get();
+            newCells.put((int) cell, packed(kind, MapMessage.isMovable(kind) ? bytes.getInt() : 0));
+        }
+        List<City> newCities = getCities(bytes);
+        entities.clear();
+        getEntities(bytes);
+        width = newWidth;
+        height = newHeight;
+        cells = newCells;
+        cities = newCities;
+    }
+
+    private void applyDelta(ByteBuffer bytes) {
+        int count = bytes.getInt();
+        for (int i = 0; i < count; i++) {
+            int x = bytes.getInt();
+            int y = bytes.getInt();
+            if (x < 0 || x >= width || y < 0 || y >= height)
+                throw new IndexOutOfBoundsException("Cell " + x + ", " + y + " is not on the map");
+            byte kind = bytes.get();
+            int token = bytes.getInt();
+            if (kind == MapMessage.EMPTY)
+                cells.remove(y * width + x);
+            else
+                cells.put(y * width + x, packed(kind, token));
+        }
+        getEntities(bytes);
+        int removed = bytes.getInt();
+        for (int i = 0; i < removed; i++)
+            entities.remove(bytes.getInt());
+        List<City> newCities = getCities(bytes);
+        if (!newCities.isEmpty())
+            cities = newCities;
+    }
+
+    private static long packed(byte kind, int token) {
+        return ((long) kind << 32) | (token & 0xFFFFFFFFL);
+    }
+
+    private void getEntities(ByteBuffer bytes) {
+        int count = bytes.getInt();
+        for (int i = 0; i < count; i++) {
+            MapMessage.Entity entity = new MapMessage.Entity(bytes.getInt(), bytes.get(), bytes.getInt(),
+                    getString(bytes));
+            entities.put(entity.token(), entity);
+        }
+    }
+
+    private static List<City> getCities(ByteBuffer bytes) {
+        int count = bytes.getInt();
+        List<City> cities = new ArrayList<>(Math.max(0, Math.min(count, bytes.remaining() / 12)));
+        for (int i = 0; i < count; i++)
+            cities.add(new City(getString(bytes), bytes.getDouble()));
+        return cities;
+    }
+
+    private static String getString(ByteBuffer bytes) {
+        int length = bytes.getInt();
+        if (length < 0 || length > bytes.remaining())
+            throw new BufferUnderflowException();
+        byte[] string = new byte[length];
+        bytes.get(string);
+        return new String(string, StandardCharsets.UTF_8);
+    }
+
+}
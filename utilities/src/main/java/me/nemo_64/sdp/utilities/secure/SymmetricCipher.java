@@ -71,9 +71,13 @@ public class SymmetricCipher {
     }
 
     public byte[] encrypt(byte[] bytes) {
+        return encrypt(bytes, 0, bytes.length);
+    }
+
+    public byte[] encrypt(byte[] bytes, int offset, int length) {
         try {
             this.cipher.init(Cipher.ENCRYPT_MODE, this.secretKey, new IvParameterSpec(SALT));
-            return this.cipher.doFinal(bytes);
+            return this.cipher.doFinal(bytes, offset, length);
         } catch (InvalidKeyException e) {
             throw new RuntimeException(e);
         } catch (IllegalBlockSizeException e) {
@@ -0,0 +1,60 @@
+package me.nemo_64.sdp.utilities.snapshot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// Layout of the memory mapped snapshot the engine keeps of every game. A fixed header is followed by one fixed size
+// slot per element. The sequence is odd while the engine is writing, so readers copy the file and check that the
+// sequence did not change and was even
+public final class SnapshotLayout {
+
+    private SnapshotLayout() {
+    }
+
+    public static final String EXTENSION = ".snapshot";
+
+    static final int MAGIC = 0x53445053;
+    static final int NO_GAME = 0;
+
+    static final int MAGIC_OFFSET = 0; // int, NO_GAME once the game finished
+    static final int SEQUENCE_OFFSET = 8; // long
+    static final int TICK_OFFSET = 16; // long
+    static final int WIDTH_OFFSET = 24; // int
+    static final int HEIGHT_OFFSET = 28; // int
+    static final int ELEMENTS_OFFSET = 32; // int
+    static final int CITIES_OFFSET = 36; // int, then the cities
+    static final int STATS_OFFSET = 40; // players, npcs, food and mines as ints
+    static final int CITY_OFFSET = 56;
+
+    static final int MAX_CITIES = 4;
+    static final int CITY_NAME_BYTES = 31;
+    static final int CITY_SIZE = 8 + 1 + CITY_NAME_BYTES; // temperature, name length, name
+    static final int HEADER_SIZE = CITY_OFFSET + MAX_CITIES * CITY_SIZE;
+
+    static final int SLOT_KIND = 0; // byte
+    static final int SLOT_NAME_LENGTH = 1; // byte
+    static final int SLOT_X = 4; // int
+    static final int SLOT_Y = 8; // int
+    static final int SLOT_LEVEL = 12; // int
+    static final int SLOT_TOKEN = 16; // int
+    static final int SLOT_PLAYER = 20; // two longs
+    static final int SLOT_NAME = 36;
+    static final int SLOT_NAME_BYTES = 28;
+    static final int SLOT_SIZE = SLOT_NAME + SLOT_NAME_BYTES;
+
+    public static final byte FOOD = 1;
+    public static final byte MINE = 2;
+    public static final byte NPC = 3;
+    public static final byte PLAYER = 4;
+
+    // Codes the elements have in the JSON of a game
+    static final String[] TYPE_NAMES = { null, "food", "mine", "npc", "player" };
+
+    static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    static long sizeFor(int elements) {
+        return HEADER_SIZE + (long) elements * SLOT_SIZE;
+    }
+
+}
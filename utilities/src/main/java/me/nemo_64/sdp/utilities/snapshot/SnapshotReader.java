@@ -0,0 +1,151 @@
+package me.nemo_64.sdp.utilities.snapshot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+
+import static me.nemo_64.sdp.utilities.snapshot.SnapshotLayout.*;
+
+// Reads the snapshot of a game written by the engine. A snapshot is only turned into JSON once, later reads of the
+// same snapshot return the same object
+public class SnapshotReader {
+
+    private static final int MAX_ATTEMPTS = 64;
+
+    public static Optional<SnapshotReader> open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            if (channel.size() < sizeFor(0)) {
+                channel.close();
+                return Optional.empty();
+            }
+            return Optional.of(new SnapshotReader(channel));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long lastSequence = -1;
+    private JsonObject last;
+
+    private SnapshotReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    // Empty once the game finished or if the engine kept writing during every attempt
+    public synchronized Optional<JsonObject> read(String gameId) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long before = (long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC)
+                return Optional.empty();
+            if (before == lastSequence)
+                return Optional.of(last);
+            int elements = buffer.getInt(ELEMENTS_OFFSET);
+            long size = sizeFor(elements);
+            if (elements < 0 || size > Integer.MAX_VALUE || (size > buffer.capacity() && !remap(size)))
+                continue;
+            byte[] copy = new byte[(int) size];
+            buffer.get(0, copy);
+            VarHandle.acquireFence();
+            if ((long) SEQUENCE.getVolatile(buffer, SEQUENCE_OFFSET) != before)
+                continue;
+            last = decode(gameId, ByteBuffer.wrap(copy), elements);
+            lastSequence = before;
+            return Optional.of(last);
+        }
+        return Optional.empty();
+    }
+
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // The engine grew the file since it was mapped
+    private boolean remap(long size) {
+        try {
+            if (channel.size() < size)
+                return false;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static JsonObject decode(String gameId, ByteBuffer bytes, int elements) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", gameId);
+        json.addProperty("tick", bytes.getLong(TICK_OFFSET));
+        json.addProperty("width", bytes.getInt(WIDTH_OFFSET));
+        json.addProperty("height", bytes.getInt(HEIGHT_OFFSET));
+        int cityCount = Math.min(bytes.getInt(CITIES_OFFSET), MAX_CITIES);
+        JsonArray cities = new JsonArray(cityCount);
+        for (int i = 0; i < cityCount; i++) {
+            int offset = CITY_OFFSET + i * CITY_SIZE;
+            JsonObject city = new JsonObject();
+            city.addProperty("name", getName(bytes, offset + 8, offset + 9, CITY_NAME_BYTES));
+            city.addProperty("temperature", bytes.getDouble(offset));
+            cities.add(city);
+        }
+        json.add("cities", cities);
+        JsonArray map = new JsonArray(elements);
+        for (int i = 0; i < elements; i++) {
+            int offset = HEADER_SIZE + i * SLOT_SIZE;
+            byte kind = bytes.get(offset + SLOT_KIND);
+            if (kind <= 0 || kind >= TYPE_NAMES.length)
+                continue;
+            JsonObject element = new JsonObject();
+            element.addProperty("type", TYPE_NAMES[kind]);
+            JsonArray position = new JsonArray(2);
+            position.add(bytes.getInt(offset + SLOT_X));
+            position.add(bytes.getInt(offset + SLOT_Y));
+            element.add("position", position);
+            if (kind == NPC || kind == PLAYER) {
+                element.addProperty("level", bytes.getInt(offset + SLOT_LEVEL));
+                element.addProperty("token", bytes.getInt(offset + SLOT_TOKEN));
+            }
+            if (kind == PLAYER) {
+                UUID player = new UUID(bytes.getLong(offset + SLOT_PLAYER), bytes.getLong(offset + SLOT_PLAYER + 8));
+                element.addProperty("player", player.toString());
+                element.addProperty("player-name",
+                        getName(bytes, offset + SLOT_NAME_LENGTH, offset + SLOT_NAME, SLOT_NAME_BYTES));
+            }
+            map.add(element);
+        }
+        json.add("map", map);
+        JsonObject stats = new JsonObject();
+        stats.addProperty("players", bytes.getInt(STATS_OFFSET));
+        stats.addProperty("npcs", bytes.getInt(STATS_OFFSET + 4));
+        stats.addProperty("food", bytes.getInt(STATS_OFFSET + 8));
+        stats.addProperty("mines", bytes.getInt(STATS_OFFSET + 12));
+        stats.addProperty("tick", bytes.getLong(TICK_OFFSET));
+        json.add("stats", stats);
+        return json;
+    }
+
+    private static String getName(ByteBuffer bytes, int lengthOffset, int offset, int maxBytes) {
+        int length = Math.min(bytes.get(lengthOffset) & 0xFF, maxBytes);
+        return new String(bytes.array(), offset, length, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,129 @@
+package me.nemo_64.sdp.utilities.snapshot;
+
+import me.nemo_64.sdp.utilities.data.City;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static me.nemo_64.sdp.utilities.snapshot.SnapshotLayout.*;
+
+// Writes the snapshot of a game in place. Only one thread may write at a time, readers can read it at any moment
+public class SnapshotWriter {
+
+    public static Optional<SnapshotWriter> open(Path file, Logger logger) {
+        try {
+            Files.createDirectories(file.getParent());
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return Optional.of(new SnapshotWriter(file, channel, logger));
+        } catch (IOException e) {
+            logger.warning("Could not open the snapshot " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Logger logger;
+    private MappedByteBuffer buffer;
+    private long sequence;
+
+    private SnapshotWriter(Path file, FileChannel channel, Logger logger) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.logger = logger;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), sizeFor(0)));
+        // Readers that cached a sequence of a previous run of the game must not mistake the new snapshots for it
+        this.sequence = buffer.getInt(MAGIC_OFFSET) == MAGIC ? (buffer.getLong(SEQUENCE_OFFSET) + 1) & ~1L : 0;
+    }
+
+    // Starts writing a snapshot of the given amount of elements. The file only grows when they don't fit
+    public boolean begin(int elements) {
+        if (sizeFor(elements) > buffer.capacity()) {
+            try {
+                // Some room is left so a growing game does not remap on every snapshot
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeFor(elements + elements / 4));
+            } catch (IOException e) {
+                logger.warning("Could not grow the snapshot " + file + ": " + e.getMessage());
+                return false;
+            }
+        }
+        SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, ++sequence);
+        // The volatile store does not keep the plain stores after it from moving before it
+        VarHandle.storeStoreFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(ELEMENTS_OFFSET, elements);
+        return true;
+    }
+
+    public void header(long tick, int width, int height, City[] cities) {
+        buffer.putLong(TICK_OFFSET, tick);
+        buffer.putInt(WIDTH_OFFSET, width);
+        buffer.putInt(HEIGHT_OFFSET, height);
+        int count = Math.min(cities.length, MAX_CITIES);
+        buffer.putInt(CITIES_OFFSET, count);
+        for (int i = 0; i < count; i++) {
+            int offset = CITY_OFFSET + i * CITY_SIZE;
+            buffer.putDouble(offset, cities[i].temperature());
+            putName(offset + 8, offset + 9, CITY_NAME_BYTES, cities[i].name());
+        }
+    }
+
+    // Player and name are only used by players
+    public void element(int slot, byte kind, int x, int y, int level, int token, UUID player, String name) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        buffer.put(offset + SLOT_KIND, kind);
+        buffer.putInt(offset + SLOT_X, x);
+        buffer.putInt(offset + SLOT_Y, y);
+        buffer.putInt(offset + SLOT_LEVEL, level);
+        buffer.putInt(offset + SLOT_TOKEN, token);
+        buffer.putLong(offset + SLOT_PLAYER, player == null ? 0 : player.getMostSignificantBits());
+        buffer.putLong(offset + SLOT_PLAYER + 8, player == null ? 0 : player.getLeastSignificantBits());
+        putName(offset + SLOT_NAME_LENGTH, offset + SLOT_NAME, SLOT_NAME_BYTES, name);
+    }
+
+    // Readers skip empty slots
+    public void clear(int slot) {
+        buffer.put(HEADER_SIZE + slot * SLOT_SIZE + SLOT_KIND, (byte) 0);
+    }
+
+    public void end(int players, int npcs, int food, int mines) {
+        buffer.putInt(STATS_OFFSET, players);
+        buffer.putInt(STATS_OFFSET + 4, npcs);
+        buffer.putInt(STATS_OFFSET + 8, food);
+        buffer.putInt(STATS_OFFSET + 12, mines);
+        SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, ++sequence);
+    }
+
+    // Marks the game as gone before deleting the file, as it can't be deleted while mapped on some systems
+    public void close() {
+        SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, ++sequence);
+        VarHandle.storeStoreFence();
+        buffer.putInt(MAGIC_OFFSET, NO_GAME);
+        SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, ++sequence);
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warning("Could not delete the snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Names longer than the room they have are cut
+    private void putName(int lengthOffset, int offset, int maxBytes, String name) {
+        byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, maxBytes);
+        buffer.put(lengthOffset, (byte) length);
+        buffer.put(offset, bytes, 0, length);
+    }
+
+}
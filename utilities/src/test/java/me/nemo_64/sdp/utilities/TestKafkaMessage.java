@@ -0,0 +1,20 @@
+package me.nemo_64.sdp.utilities;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestKafkaMessage {
+
+    @Test
+    public void testDirectionsRoundTrip() {
+        for (int direction = 0; direction < KafkaMessage.DIRECTION_COUNT; direction++)
+            Assertions.assertEquals(direction, KafkaMessage.directionFor(KafkaMessage.directionName(direction)));
+    }
+
+    @Test
+    public void testUnknownDirection() {
+        Assertions.assertEquals(-1, KafkaMessage.directionFor("UP"));
+        Assertions.assertEquals("?", KafkaMessage.directionName(KafkaMessage.DIRECTION_COUNT));
+    }
+
+}
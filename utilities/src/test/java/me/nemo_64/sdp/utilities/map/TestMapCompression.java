@@ -0,0 +1,92 @@
+package me.nemo_64.sdp.utilities.map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+public class TestMapCompression {
+
+    private static byte[] compress(MapCompression compression, byte[] message) {
+        MapMessage.Writer compressed = compression.compress(message, 0, message.length);
+        return Arrays.copyOf(compressed.bytes(), compressed.length());
+    }
+
+    @Test
+    public void testDeflatedRoundTrip() {
+        byte[] message = new byte[4096];
+        for (int i = 0; i < message.length; i += 7)
+            message[i] = (byte) i;
+        try (MapCompression compression = MapCompression.of(MapCompression.DEFLATE, 1);
+                MapCompression reader = MapCompression.reader()) {
+            byte[] compressed = compress(compression, message);
+            Assertions.assertEquals(1, compressed[0]);
+            Assertions.assertTrue(compressed.length < message.length);
+            Assertions.assertArrayEquals(message, reader.decompress(compressed).orElseThrow());
+        }
+    }
+
+    @Test
+    public void testRawFallback() {
+        byte[] message = new byte[512];
+        new SplittableRandom(3).nextBytes(message);
+        try (MapCompression compression = MapCompression.of(MapCompression.DEFLATE, 9);
+                MapCompression none = MapCompression.of(MapCompression.NONE, 1);
+                MapCompression reader = MapCompression.reader()) {
+            // Random bytes do not get smaller, so they are sent as they are
+            byte[] compressed = compress(compression, message);
+            Assertions.assertEquals(0, compressed[0]);
+            Assertions.assertEquals(message.length + 1, compressed.length);
+            Assertions.assertArrayEquals(message, reader.decompress(compressed).orElseThrow());
+            Assertions.assertArrayEquals(message, reader.decompress(compress(none, message)).orElseThrow());
+        }
+    }
+
+    @Test
+    public void testTruncatedMessage() {
+        byte[] message = new byte[4096];
+        try (MapCompression compression = MapCompression.of(MapCompression.DEFLATE, 1);
+                MapCompression reader = MapCompression.reader()) {
+            byte[] compressed = compress(compression, message);
+            Assertions.assertEquals(Optional.empty(),
+                    reader.decompress(Arrays.copyOf(compressed, compressed.length - 2)));
+            Assertions.assertEquals(Optional.empty(), reader.decompress(Arrays.copyOf(compressed, 3)));
+            Assertions.assertEquals(Optional.empty(), reader.decompress(new byte[0]));
+        }
+    }
+
+    @Test
+    public void testLengthClaims() {
+        byte[] message = new byte[4096];
+        try (MapCompression compression = MapCompression.of(MapCompression.DEFLATE, 1);
+                MapCompression reader = MapCompression.reader()) {
+            byte[] compressed = compress(compression, message);
+            // Larger than any message, nothing is allocated for it
+            byte[] huge = compressed.clone();
+            huge[1] = 0x7F;
+            Assertions.assertEquals(Optional.empty(), reader.decompress(huge));
+            // Claims more or less than the stream holds
+            byte[] longer = compressed.clone();
+            longer[3] = 0x20;
+            Assertions.assertEquals(Optional.empty(), reader.decompress(longer));
+            byte[] shorter = compressed.clone();
+            shorter[3] = 0x0F;
+            Assertions.assertEquals(Optional.empty(), reader.decompress(shorter));
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        MapCompression compression = MapCompression.of(MapCompression.DEFLATE, 1);
+        MapCompression reader = MapCompression.reader();
+        byte[] compressed = compress(compression, new byte[64]);
+        compression.close();
+        compression.close();
+        reader.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> compress(compression, new byte[64]));
+        Assertions.assertEquals(Optional.empty(), reader.decompress(compressed));
+    }
+
+}
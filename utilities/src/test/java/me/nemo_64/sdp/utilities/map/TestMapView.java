@@ -0,0 +1,69 @@
+package me.nemo_64.sdp.utilities.map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class TestMapView {
+
+    // A 4x3 map with food on 1, 0 and the player with token 7 on 2, 2
+    private static byte[] keyframe() {
+        MapMessage.Writer message = new MapMessage.Writer(0);
+        message.putByte(MapMessage.VERSION).putByte(MapMessage.KEYFRAME).putLong(0);
+        message.putInt(4).putInt(3).putInt(2);
+        message.putInt(1).putByte(MapMessage.FOOD);
+        message.putInt(8).putByte(MapMessage.PLAYER).putInt(7);
+        message.putInt(0);
+        message.putInt(1).putInt(7).putByte(MapMessage.PLAYER).putInt(3).putString("alice");
+        return Arrays.copyOf(message.bytes(), message.length());
+    }
+
+    @Test
+    public void testKeyframeSkipsEmptyCells() {
+        MapView view = new MapView();
+        Assertions.assertTrue(view.apply(keyframe()));
+        Assertions.assertEquals(4, view.getWidth());
+        Assertions.assertEquals(3, view.getHeight());
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                byte kind = MapMessage.EMPTY;
+                if (x == 1 && y == 0)
+                    kind = MapMessage.FOOD;
+                else if (x == 2 && y == 2)
+                    kind = MapMessage.PLAYER;
+                Assertions.assertEquals(kind, view.kindAt(x, y));
+            }
+        }
+        Assertions.assertEquals(7, view.tokenAt(2, 2));
+        Assertions.assertEquals("alice", view.getEntity(7).orElseThrow().name());
+    }
+
+    @Test
+    public void testDeltaEmptiesCells() {
+        MapView view = new MapView();
+        view.apply(keyframe());
+        MapMessage.Writer message = new MapMessage.Writer(0);
+        message.putByte(MapMessage.VERSION).putByte(MapMessage.DELTA).putLong(1);
+        message.putInt(2);
+        message.putInt(2).putInt(2).putByte(MapMessage.EMPTY).putInt(0);
+        message.putInt(3).putInt(2).putByte(MapMessage.PLAYER).putInt(7);
+        message.putInt(0).putInt(0).putInt(0);
+        Assertions.assertTrue(view.apply(Arrays.copyOf(message.bytes(), message.length())));
+        Assertions.assertEquals(MapMessage.EMPTY, view.kindAt(2, 2));
+        Assertions.assertEquals(0, view.tokenAt(2, 2));
+        Assertions.assertEquals(MapMessage.PLAYER, view.kindAt(3, 2));
+        Assertions.assertEquals(7, view.tokenAt(3, 2));
+    }
+
+    @Test
+    public void testCellsPastTheMapAreRejected() {
+        MapMessage.Writer message = new MapMessage.Writer(0);
+        message.putByte(MapMessage.VERSION).putByte(MapMessage.KEYFRAME).putLong(0);
+        message.putInt(2).putInt(2).putInt(1).putInt(4).putByte(MapMessage.FOOD).putInt(0).putInt(0);
+        MapView view = new MapView();
+        Assertions.assertFalse(view.apply(Arrays.copyOf(message.bytes(), message.length())));
+        Assertions.assertFalse(view.isSynced());
+    }
+
+}